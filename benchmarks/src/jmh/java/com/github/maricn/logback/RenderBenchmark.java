@@ -0,0 +1,80 @@
+package com.github.maricn.logback;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+
+/**
+ * Compares the allocations of rendering an event with the default layout
+ * and splitting off its first line, with string concatenation, regular
+ * expression and split as done before, and with the render path of the
+ * appender, which renders into a reused buffer.
+ *
+ * In the package of the appender to call its package-private render
+ * method. Run with the gc profiler (as configured) and compare
+ * <code>gc.alloc.rate.norm</code>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RenderBenchmark {
+
+    /**
+     * Number of lines of the message.
+     */
+    @Param({ "1", "10" })
+    public int lines;
+
+    /**
+     * Maximum length of a rendered event, the message with 10 lines is
+     * truncated with the lower limit.
+     */
+    @Param({ "8000", "200" })
+    public int maxEventLength;
+
+    private final SlackAppender appender = new SlackAppender();
+    private LoggingEvent loggingEvent;
+
+    @Setup
+    public void setup() {
+        LoggerContext context = new LoggerContext();
+        Logger logger = context.getLogger("com.example.service.OrderService");
+
+        StringBuilder message = new StringBuilder("Order {} took {} ms to process");
+        for (int i = 1; i < lines; i++) {
+            message.append("\n  step ").append(i).append(": validation of line items and payment details");
+        }
+        loggingEvent = new LoggingEvent(Logger.class.getName(), logger, Level.WARN, message.toString(), null,
+            new Object[] { 4711, 1234 });
+        // formatted once, like logback does for all appenders
+        loggingEvent.getFormattedMessage();
+
+        appender.setContext(context);
+        appender.setMaxEventLength(maxEventLength);
+    }
+
+    @Benchmark
+    public String[] concatenateAndSplit() {
+        String rendered = "-- [" + loggingEvent.getLevel() + "]" + loggingEvent.getLoggerName() + " - "
+            + loggingEvent.getFormattedMessage().replaceAll("\n", "\n\t");
+        return rendered.split("\n", 2);
+    }
+
+    @Benchmark
+    public String[] render() {
+        return appender.render(loggingEvent);
+    }
+
+}
@@ -0,0 +1,113 @@
+package to.wetf.logging.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.slf4j.Logger;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.UnsynchronizedAppenderBase;
+import to.wetf.logging.slf4j.GenerateMarkerAugmentedLogger;
+import to.wetf.logging.slf4j.MarkerAugmentedLogger;
+import to.wetf.logging.slf4j.Markers;
+
+/**
+ * Measures the per call overhead of the marker augmented loggers compared
+ * to a plain logback logger, for enabled and disabled levels.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AugmentedLoggerBenchmark {
+
+  /**
+   * Appender that only keeps the last event.
+   */
+  private static class LastEventAppender extends UnsynchronizedAppenderBase<ILoggingEvent> {
+
+    private volatile ILoggingEvent last;
+
+    @Override
+    protected void append(ILoggingEvent event) {
+      last = event;
+    }
+
+  }
+
+  private LoggerContext context;
+  private Logger plain;
+  private Logger augmented;
+  private Logger generated;
+
+  private int count;
+
+  @Setup
+  public void setup() {
+    context = new LoggerContext();
+
+    LastEventAppender appender = new LastEventAppender();
+    appender.setContext(context);
+    appender.start();
+
+    ch.qos.logback.classic.Logger logger = context.getLogger("com.example.service.OrderService");
+    logger.setLevel(Level.INFO);
+    logger.setAdditive(false);
+    logger.addAppender(appender);
+
+    Map<String, String> fields = new HashMap<>();
+    fields.put("orderId", "4711");
+    fields.put("customer", "ACME Corporation");
+    fields.put("requestId", "5f0c2a9e-6c1b-4f0e-9a59-1f6f2b1c7d3e");
+
+    plain = logger;
+    augmented = new MarkerAugmentedLogger(logger, Markers.contextMarker(fields));
+    generated = new GenerateMarkerAugmentedLogger(logger, () -> Markers.contextMarker(fields));
+  }
+
+  @TearDown
+  public void tearDown() {
+    context.stop();
+  }
+
+  @Benchmark
+  public void plainEnabled() {
+    plain.info("Processed {} items", count++);
+  }
+
+  @Benchmark
+  public void augmentedEnabled() {
+    augmented.info("Processed {} items", count++);
+  }
+
+  @Benchmark
+  public void generatedEnabled() {
+    generated.info("Processed {} items", count++);
+  }
+
+  @Benchmark
+  public void plainDisabled() {
+    plain.debug("Processed {} items", count++);
+  }
+
+  @Benchmark
+  public void augmentedDisabled() {
+    augmented.debug("Processed {} items", count++);
+  }
+
+  @Benchmark
+  public void generatedDisabled() {
+    generated.debug("Processed {} items", count++);
+  }
+
+}
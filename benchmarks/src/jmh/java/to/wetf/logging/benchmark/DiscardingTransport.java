@@ -0,0 +1,31 @@
+package to.wetf.logging.benchmark;
+
+import java.net.URI;
+
+import com.github.maricn.logback.SlackResponse;
+import com.github.maricn.logback.SlackTransport;
+
+/**
+ * Slack transport that discards all messages, to measure the appender
+ * without network I/O.
+ */
+public class DiscardingTransport implements SlackTransport {
+
+  private static final SlackResponse OK = new SlackResponse(200, "ok", -1);
+
+  private volatile long bytes;
+
+  @Override
+  public SlackResponse post(URI uri, String contentType, byte[] body) {
+    bytes += body.length;
+    return OK;
+  }
+
+  /**
+   * @return the number of bytes posted
+   */
+  public long getBytes() {
+    return bytes;
+  }
+
+}
@@ -0,0 +1,66 @@
+package to.wetf.logging.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.slf4j.Marker;
+import org.slf4j.MarkerFactory;
+
+import to.wetf.logging.slf4j.Markers;
+
+/**
+ * Measures searching deep marker trees, as done by the Slack appender for
+ * every event.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FindMarkerBenchmark {
+
+  /**
+   * Number of nested levels.
+   */
+  @Param({ "1", "10", "50" })
+  public int depth;
+
+  /**
+   * Number of markers per level, searched before descending further.
+   */
+  @Param({ "1", "4" })
+  public int breadth;
+
+  private Marker tree;
+
+  @Setup
+  public void setup() {
+    // the searched marker is at the deepest level
+    Marker current = Markers.IMPORTANT;
+    for (int level = depth; level > 0; level--) {
+      Marker wrapper = MarkerFactory.getDetachedMarker(Markers.MARKER_NAME_WRAPPER);
+      for (int i = 1; i < breadth; i++) {
+        wrapper.add(MarkerFactory.getDetachedMarker("LEAF_" + level + "_" + i));
+      }
+      wrapper.add(current);
+      current = wrapper;
+    }
+    tree = current;
+  }
+
+  @Benchmark
+  public Marker found() {
+    return Markers.findMarker(tree, Markers.MARKER_NAME_IMPORTANT);
+  }
+
+  @Benchmark
+  public Marker notFound() {
+    return Markers.findMarker(tree, Markers.MARKER_NAME_NO_SLACK);
+  }
+
+}
@@ -0,0 +1,62 @@
+package to.wetf.logging.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.slf4j.Marker;
+
+import to.wetf.logging.slf4j.Markers;
+
+/**
+ * Measures creating, reading and combining context markers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MarkersBenchmark {
+
+  @Param({ "1", "5", "10", "50" })
+  public int keys;
+
+  private Map<String, String> context;
+  private Marker marker;
+  private Marker other;
+
+  @Setup
+  public void setup() {
+    context = new HashMap<>();
+    Map<String, String> otherContext = new HashMap<>();
+    for (int i = 0; i < keys; i++) {
+      context.put("key" + i, "value" + i);
+      // half of the keys overlap
+      otherContext.put("key" + (i + keys / 2), "other" + i);
+    }
+    marker = Markers.contextMarker(context);
+    other = Markers.contextMarker(otherContext);
+  }
+
+  @Benchmark
+  public Marker contextMarker() {
+    return Markers.contextMarker(context);
+  }
+
+  @Benchmark
+  public Map<String, String> getContext() {
+    return Markers.getContext(marker);
+  }
+
+  @Benchmark
+  public Marker combineContext() {
+    return Markers.combineContext(marker, other);
+  }
+
+}
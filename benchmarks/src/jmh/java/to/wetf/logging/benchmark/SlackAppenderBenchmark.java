@@ -0,0 +1,114 @@
+package to.wetf.logging.benchmark;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.github.maricn.logback.SlackAppender;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.PatternLayout;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import to.wetf.logging.slf4j.Markers;
+
+/**
+ * Measures rendering and serializing an event to a Slack payload, with a
+ * transport that discards the payload.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SlackAppenderBenchmark {
+
+  /**
+   * <code>typical</code> is a one line message with a few context fields,
+   * <code>large</code> a multi-line message with a deep stack trace.
+   */
+  @Param({ "typical", "large" })
+  public String event;
+
+  private LoggerContext context;
+  private SlackAppender appender;
+  private DiscardingTransport transport;
+  private LoggingEvent loggingEvent;
+
+  @Setup
+  public void setup() {
+    context = new LoggerContext();
+    Logger logger = context.getLogger("com.example.service.OrderService");
+
+    transport = new DiscardingTransport();
+    appender = new SlackAppender();
+    appender.setContext(context);
+    appender.setName("SLACK");
+    appender.setWebhookUri("https://hooks.slack.com/services/T000/B000/XXXX");
+    appender.setChannel("#logs");
+    appender.setUsername("logger");
+    appender.setIconEmoji("exclamation");
+    appender.setJmx(false);
+    appender.setTransport(transport);
+
+    Map<String, String> fields = new LinkedHashMap<>();
+    fields.put("orderId", "4711");
+    fields.put("customer", "ACME Corporation");
+    fields.put("requestId", "5f0c2a9e-6c1b-4f0e-9a59-1f6f2b1c7d3e");
+
+    if ("large".equals(event)) {
+      PatternLayout layout = new PatternLayout();
+      layout.setContext(context);
+      layout.setPattern("%message%n%xException%n");
+      layout.start();
+      appender.setLayout(layout);
+
+      StringBuilder message = new StringBuilder("Failed to process order {}");
+      for (int i = 0; i < 10; i++) {
+        message.append("\n  step ").append(i).append(": validation of line items and payment details");
+      }
+      loggingEvent = new LoggingEvent(Logger.class.getName(), logger, Level.ERROR, message.toString(),
+        new IllegalStateException("Processing failed", deepException(200)), new Object[] { 4711 });
+      loggingEvent.addMarker(Markers.combineMarkers(Markers.IMPORTANT, Markers.contextMarker(fields)));
+    }
+    else {
+      loggingEvent = new LoggingEvent(Logger.class.getName(), logger, Level.WARN,
+        "Order {} took {} ms to process", null, new Object[] { 4711, 1234 });
+      loggingEvent.addMarker(Markers.contextMarker(fields));
+    }
+
+    appender.start();
+  }
+
+  @TearDown
+  public void tearDown() {
+    appender.stop();
+    context.stop();
+  }
+
+  @Benchmark
+  public long append() {
+    appender.doAppend(loggingEvent);
+    return transport.getBytes();
+  }
+
+  /**
+   * Create an exception with a stack of at least the given depth.
+   */
+  static Exception deepException(int depth) {
+    if (depth <= 0) {
+      return new IllegalArgumentException("Invalid line item");
+    }
+    return deepException(depth - 1);
+  }
+
+}
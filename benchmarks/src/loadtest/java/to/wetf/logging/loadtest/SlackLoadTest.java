@@ -0,0 +1,236 @@
+package to.wetf.logging.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+
+import com.github.maricn.logback.HttpClientSlackTransport;
+import com.github.maricn.logback.LatencyHistogram;
+import com.github.maricn.logback.SlackAppender;
+import com.github.maricn.logback.SlackAppenderMetrics;
+import com.github.maricn.logback.SlackResponse;
+import com.github.maricn.logback.SlackTransport;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+
+/**
+ * Load test driving a {@link SlackAppender} against a
+ * {@link SlackStubServer} from multiple producer threads.
+ *
+ * Options are passed as <code>--name=value</code>, see {@link #DEFAULTS}.
+ */
+public class SlackLoadTest {
+
+  /**
+   * Options and their default values.
+   */
+  private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+  static {
+    // load
+    DEFAULTS.put("producers", "4");
+    DEFAULTS.put("events", "10000");
+    DEFAULTS.put("mode", "webhook");
+    DEFAULTS.put("drainTimeout", "60000");
+    // stub server
+    DEFAULTS.put("latency", "50");
+    DEFAULTS.put("rateLimitRatio", "0");
+    DEFAULTS.put("errorRatio", "0");
+    DEFAULTS.put("dropRatio", "0");
+    DEFAULTS.put("retryAfter", "1");
+    // appender
+    DEFAULTS.put("async", "true");
+    DEFAULTS.put("queueSize", "256");
+    DEFAULTS.put("queueMaxBytes", "8388608");
+    DEFAULTS.put("overflowPolicy", "drop-newest");
+    DEFAULTS.put("senderThreads", "1");
+    DEFAULTS.put("virtualThreads", "false");
+    DEFAULTS.put("waitStrategy", "park");
+    DEFAULTS.put("maxInFlightPerDestination", "4");
+    DEFAULTS.put("batchMaxEvents", "20");
+    DEFAULTS.put("batchLinger", "1000");
+    DEFAULTS.put("rateLimit", "0");
+    DEFAULTS.put("retryMaxAttempts", "3");
+    DEFAULTS.put("circuitBreakerThreshold", "5");
+    DEFAULTS.put("loadShedding", "false");
+    DEFAULTS.put("http2", "false");
+  }
+
+  /**
+   * Transport that sends messages for the Slack API to the stub server.
+   */
+  private static class StubTransport implements SlackTransport {
+
+    private final SlackTransport delegate;
+    private final URI base;
+
+    StubTransport(SlackTransport delegate, URI base) {
+      this.delegate = delegate;
+      this.base = base;
+    }
+
+    @Override
+    public void start(int timeout) {
+      delegate.start(timeout);
+    }
+
+    @Override
+    public SlackResponse post(URI uri, String contentType, byte[] body) throws IOException {
+      return delegate.post(base.resolve(uri.getRawPath()), contentType, body);
+    }
+
+    @Override
+    public void stop() {
+      delegate.stop();
+    }
+
+  }
+
+  public static void main(String[] args) throws Exception {
+    Map<String, String> options = new LinkedHashMap<>(DEFAULTS);
+    for (String arg : args) {
+      int separator = arg.indexOf('=');
+      String name = arg.startsWith("--") && separator > 2 ? arg.substring(2, separator) : null;
+      if (name == null || !DEFAULTS.containsKey(name)) {
+        System.err.println("Unknown option " + arg + ", supported options (with defaults):");
+        DEFAULTS.forEach((key, value) -> System.err.println("  --" + key + "=" + value));
+        System.exit(1);
+      }
+      options.put(name, arg.substring(separator + 1));
+    }
+
+    try (SlackStubServer stub = new SlackStubServer(Long.parseLong(options.get("latency")),
+        Double.parseDouble(options.get("rateLimitRatio")), Double.parseDouble(options.get("errorRatio")),
+        Double.parseDouble(options.get("dropRatio")), Integer.parseInt(options.get("retryAfter")))) {
+      stub.start();
+      new SlackLoadTest(options, stub).run();
+    }
+  }
+
+  private final Map<String, String> options;
+  private final SlackStubServer stub;
+
+  private SlackLoadTest(Map<String, String> options, SlackStubServer stub) {
+    this.options = options;
+    this.stub = stub;
+  }
+
+  private void run() throws InterruptedException {
+    LoggerContext context = new LoggerContext();
+    context.setName("loadtest");
+    SlackAppender appender = createAppender(context);
+    appender.start();
+    if (!appender.isStarted()) {
+      throw new IllegalStateException("Slack appender could not be started, check the options");
+    }
+    ch.qos.logback.classic.Logger root = context.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME);
+    root.setLevel(Level.INFO);
+    root.addAppender(appender);
+
+    int producers = integer("producers");
+    int events = integer("events");
+    LatencyHistogram callerLatency = new LatencyHistogram();
+    CountDownLatch start = new CountDownLatch(1);
+    Thread[] threads = new Thread[producers];
+    for (int i = 0; i < producers; i++) {
+      Logger logger = context.getLogger("to.wetf.logging.loadtest.Producer" + i);
+      threads[i] = new Thread(() -> produce(logger, events, start, callerLatency), "producer-" + i);
+      threads[i].start();
+    }
+
+    long startTime = System.nanoTime();
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    long produceTime = System.nanoTime() - startTime;
+
+    // wait for the appender to finish with all events
+    SlackAppenderMetrics metrics = appender.getMetrics();
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(integer("drainTimeout"));
+    while (metrics.getEventsFiltered() + metrics.getEventsSent() + metrics.getEventsSpooled()
+        + metrics.getEventsDropped() + metrics.getEventsShed() < metrics.getEventsReceived() && System.nanoTime() < deadline) {
+      Thread.sleep(50);
+    }
+    long drainTime = System.nanoTime() - startTime;
+    context.stop();
+
+    long total = (long) producers * events;
+    System.out.printf("Produced %d events with %d threads in %.2f s (%.0f events/s)%n", total, producers,
+        produceTime / 1e9, total / (produceTime / 1e9));
+    System.out.printf("Caller latency [us]: p50 %.1f, p99 %.1f, p99.9 %.1f, max %.1f%n",
+        callerLatency.getPercentile(50) / 1e3, callerLatency.getPercentile(99) / 1e3,
+        callerLatency.getPercentile(99.9) / 1e3, callerLatency.getMax() / 1e3);
+    System.out.printf("Appender: %d received, %d filtered, %d sent, %d retries, %d spooled, %d dropped,"
+        + " %d shed after %.2f s (%.0f events/s delivered)%n", metrics.getEventsReceived(), metrics.getEventsFiltered(),
+        metrics.getEventsSent(), metrics.getRetries(), metrics.getEventsSpooled(), metrics.getEventsDropped(),
+        metrics.getEventsShed(), drainTime / 1e9, metrics.getEventsSent() / (drainTime / 1e9));
+    System.out.printf("Round trip time [ms]: p50 %.1f, p99 %.1f, p99.9 %.1f, max %.1f%n",
+        metrics.getRoundTripTime50thPercentile(), metrics.getRoundTripTime99thPercentile(),
+        metrics.getRoundTripTime999thPercentile(), metrics.getRoundTripTimeMax());
+    System.out.printf("Stub server: %d requests, %d accepted, %d rate limited, %d errors, %d dropped,"
+        + " %d connections opened%n", stub.getRequests(), stub.getAccepted(), stub.getRateLimited(),
+        stub.getErrors(), stub.getDropped(), stub.getConnections());
+  }
+
+  private SlackAppender createAppender(LoggerContext context) {
+    SlackAppender appender = new SlackAppender();
+    appender.setContext(context);
+    appender.setName("SLACK");
+    appender.setUsername("loadtest");
+    appender.setIconEmoji("stopwatch");
+    appender.setJmx(false);
+
+    HttpClientSlackTransport http = new HttpClientSlackTransport();
+    http.setHttp2(Boolean.parseBoolean(options.get("http2")));
+    if ("token".equals(options.get("mode"))) {
+      appender.setToken("xoxb-loadtest");
+      appender.setChannel("#loadtest");
+      appender.setTransport(new StubTransport(http, stub.getBaseUri()));
+    }
+    else {
+      appender.setWebhookUri(stub.getBaseUri() + SlackStubServer.WEBHOOK_PATH);
+      appender.setTransport(http);
+    }
+
+    appender.setAsync(Boolean.parseBoolean(options.get("async")));
+    appender.setQueueSize(integer("queueSize"));
+    appender.setQueueMaxBytes(Long.parseLong(options.get("queueMaxBytes")));
+    appender.setOverflowPolicy(options.get("overflowPolicy"));
+    appender.setSenderThreads(integer("senderThreads"));
+    appender.setVirtualThreads(Boolean.parseBoolean(options.get("virtualThreads")));
+    appender.setWaitStrategy(options.get("waitStrategy"));
+    appender.setMaxInFlightPerDestination(integer("maxInFlightPerDestination"));
+    appender.setBatchMaxEvents(integer("batchMaxEvents"));
+    appender.setBatchLinger(Long.parseLong(options.get("batchLinger")));
+    appender.setRateLimit(Double.parseDouble(options.get("rateLimit")));
+    appender.setRetryMaxAttempts(integer("retryMaxAttempts"));
+    appender.setCircuitBreakerThreshold(integer("circuitBreakerThreshold"));
+    appender.setLoadShedding(Boolean.parseBoolean(options.get("loadShedding")));
+    return appender;
+  }
+
+  private static void produce(Logger logger, int events, CountDownLatch start, LatencyHistogram latency) {
+    try {
+      start.await();
+    } catch (InterruptedException e) {
+      return;
+    }
+    for (int i = 0; i < events; i++) {
+      long before = System.nanoTime();
+      logger.warn("Load test event {} of {}", i, events);
+      latency.record(System.nanoTime() - before);
+    }
+  }
+
+  private int integer(String option) {
+    return Integer.parseInt(options.get(option));
+  }
+
+}
@@ -0,0 +1,200 @@
+package to.wetf.logging.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local HTTP server mimicking the Slack webhook and
+ * <code>chat.postMessage</code> endpoints.
+ *
+ * Responses can be delayed, and a share of the requests can be answered
+ * with HTTP 429 or 500 or by closing the connection without a response.
+ */
+public class SlackStubServer implements AutoCloseable {
+
+  /**
+   * Path of the webhook to use with {@link #getBaseUri()}.
+   */
+  public static final String WEBHOOK_PATH = "/services/T000/B000/XXXX";
+
+  private static final String API_PATH = "/api/chat.postMessage";
+
+  private final long latencyMillis;
+  private final double rateLimitRatio;
+  private final double errorRatio;
+  private final double dropRatio;
+  private final int retryAfterSeconds;
+
+  private final LongAdder requests = new LongAdder();
+  private final LongAdder accepted = new LongAdder();
+  private final LongAdder rateLimited = new LongAdder();
+  private final LongAdder errors = new LongAdder();
+  private final LongAdder dropped = new LongAdder();
+  private final Set<InetSocketAddress> connections = ConcurrentHashMap.newKeySet();
+
+  private HttpServer server;
+  private ExecutorService executor;
+
+  /**
+   * Create a new stub server.
+   *
+   * @param latencyMillis the time to wait before responding in milliseconds
+   * @param rateLimitRatio the share of requests to answer with HTTP 429
+   * @param errorRatio the share of requests to answer with HTTP 500
+   * @param dropRatio the share of requests to answer by closing the
+   *   connection
+   * @param retryAfterSeconds the value of the <code>Retry-After</code> header
+   *   sent with HTTP 429
+   */
+  public SlackStubServer(long latencyMillis, double rateLimitRatio, double errorRatio, double dropRatio,
+      int retryAfterSeconds) {
+    this.latencyMillis = latencyMillis;
+    this.rateLimitRatio = rateLimitRatio;
+    this.errorRatio = errorRatio;
+    this.dropRatio = dropRatio;
+    this.retryAfterSeconds = retryAfterSeconds;
+  }
+
+  /**
+   * Start the server on a free port of the loopback interface.
+   *
+   * @throws IOException if the server cannot be started
+   */
+  public void start() throws IOException {
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    // one thread per request, so latency does not limit throughput
+    executor = Executors.newCachedThreadPool(r -> {
+      Thread thread = new Thread(r, "slack-stub");
+      thread.setDaemon(true);
+      return thread;
+    });
+    server.setExecutor(executor);
+    server.createContext("/services/", exchange -> handle(exchange, "ok"));
+    server.createContext(API_PATH, exchange -> handle(exchange, "{\"ok\":true}"));
+    server.start();
+  }
+
+  @Override
+  public void close() {
+    if (server != null) {
+      server.stop(0);
+      executor.shutdownNow();
+      server = null;
+    }
+  }
+
+  /**
+   * @return the URI of the server, e.g. <code>http://127.0.0.1:12345</code>
+   */
+  public URI getBaseUri() {
+    InetSocketAddress address = server.getAddress();
+    return URI.create("http://" + address.getHostString() + ":" + address.getPort());
+  }
+
+  private void handle(HttpExchange exchange, String okBody) throws IOException {
+    requests.increment();
+    connections.add(exchange.getRemoteAddress());
+    try (InputStream in = exchange.getRequestBody()) {
+      in.readAllBytes();
+    }
+
+    if (latencyMillis > 0) {
+      try {
+        Thread.sleep(latencyMillis);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    double random = ThreadLocalRandom.current().nextDouble();
+    if (random < dropRatio) {
+      dropped.increment();
+      // closing without sending headers closes the connection
+      exchange.close();
+      return;
+    }
+    random -= dropRatio;
+    if (random < rateLimitRatio) {
+      rateLimited.increment();
+      exchange.getResponseHeaders().set("Retry-After", String.valueOf(retryAfterSeconds));
+      respond(exchange, 429, "rate_limited");
+      return;
+    }
+    random -= rateLimitRatio;
+    if (random < errorRatio) {
+      errors.increment();
+      respond(exchange, 500, "internal_error");
+      return;
+    }
+
+    accepted.increment();
+    respond(exchange, 200, okBody);
+  }
+
+  private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type",
+        body.startsWith("{") ? "application/json" : "text/plain");
+    exchange.sendResponseHeaders(status, bytes.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(bytes);
+    }
+  }
+
+  /**
+   * @return the number of requests received
+   */
+  public long getRequests() {
+    return requests.sum();
+  }
+
+  /**
+   * @return the number of messages accepted
+   */
+  public long getAccepted() {
+    return accepted.sum();
+  }
+
+  /**
+   * @return the number of requests answered with HTTP 429
+   */
+  public long getRateLimited() {
+    return rateLimited.sum();
+  }
+
+  /**
+   * @return the number of requests answered with HTTP 500
+   */
+  public long getErrors() {
+    return errors.sum();
+  }
+
+  /**
+   * @return the number of requests answered by closing the connection
+   */
+  public long getDropped() {
+    return dropped.sum();
+  }
+
+  /**
+   * @return the number of connections opened by clients
+   */
+  public int getConnections() {
+    return connections.size();
+  }
+
+}
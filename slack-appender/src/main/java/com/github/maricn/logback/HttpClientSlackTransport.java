@@ -0,0 +1,110 @@
+package com.github.maricn.logback;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+/**
+ * Default {@link SlackTransport} based on {@link HttpClient}.
+ *
+ * Connections are kept alive and reused between messages, and the response
+ * body is always consumed so the connection can be returned to the pool.
+ * The number of requests in flight is limited by the appender per
+ * destination, not by the transport.
+ */
+public class HttpClientSlackTransport implements SlackTransport {
+
+    private int connectTimeout = -1;
+    private int requestTimeout = -1;
+    private boolean http2 = false;
+
+    private volatile HttpClient client;
+    private volatile Duration effectiveRequestTimeout;
+
+    @Override
+    public void start(int timeout) {
+        int connect = connectTimeout >= 0 ? connectTimeout : timeout;
+        int request = requestTimeout >= 0 ? requestTimeout : timeout;
+
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .version(http2 ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .followRedirects(HttpClient.Redirect.NEVER);
+        if (connect > 0) {
+            builder.connectTimeout(Duration.ofMillis(connect));
+        }
+        effectiveRequestTimeout = request > 0 ? Duration.ofMillis(request) : null;
+        client = builder.build();
+    }
+
+    @Override
+    public SlackResponse post(URI uri, String contentType, byte[] body) throws IOException {
+        HttpClient client = this.client;
+        if (client == null) {
+            throw new IllegalStateException("Transport was not started");
+        }
+
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri)
+                .header("Content-Type", contentType)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body));
+        Duration timeout = effectiveRequestTimeout;
+        if (timeout != null) {
+            request.timeout(timeout);
+        }
+
+        try {
+            HttpResponse<String> response = client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+            long retryAfter = SlackResponse.parseRetryAfter(
+                    response.headers().firstValue("Retry-After").orElse(null));
+            return new SlackResponse(response.statusCode(), response.body(), retryAfter);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while posting to Slack");
+        }
+    }
+
+    @Override
+    public void stop() {
+        // HttpClient releases its connections once it is no longer referenced
+        client = null;
+    }
+
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    /**
+     * @param connectTimeout the connect timeout in milliseconds, defaults to
+     *   the appender timeout
+     */
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public int getRequestTimeout() {
+        return requestTimeout;
+    }
+
+    /**
+     * @param requestTimeout the timeout for receiving a response in
+     *   milliseconds, defaults to the appender timeout
+     */
+    public void setRequestTimeout(int requestTimeout) {
+        this.requestTimeout = requestTimeout;
+    }
+
+    public boolean isHttp2() {
+        return http2;
+    }
+
+    /**
+     * @param http2 if HTTP/2 should be used if supported by the server
+     */
+    public void setHttp2(boolean http2) {
+        this.http2 = http2;
+    }
+
+}
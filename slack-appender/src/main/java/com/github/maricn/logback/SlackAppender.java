@@ -1,323 +1,2110 @@
 package com.github.maricn.logback;
 
 import java.io.IOException;
-import java.io.OutputStream;
+import java.io.InterruptedIOException;
 import java.io.StringWriter;
-import java.net.HttpURLConnection;
+import java.lang.management.ManagementFactory;
 import java.net.URI;
-import java.net.URL;
 import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.ServiceLoader;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongFunction;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import javax.management.ObjectName;
 
 import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.CallerData;
 import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
 import ch.qos.logback.core.Layout;
-import ch.qos.logback.core.LayoutBase;
 import ch.qos.logback.core.UnsynchronizedAppenderBase;
+import ch.qos.logback.core.spi.FilterReply;
 import to.wetf.logging.slf4j.Markers;
 
 public class SlackAppender extends UnsynchronizedAppenderBase<ILoggingEvent> {
 
-    private final static String API_URL = "https://slack.com/api/chat.postMessage";
-    private static Layout<ILoggingEvent> defaultLayout = new LayoutBase<ILoggingEvent>() {
-        public String doLayout(ILoggingEvent event) {
-            return "-- [" + event.getLevel() + "]" +
-                    event.getLoggerName() + " - " +
-                    event.getFormattedMessage().replaceAll("\n", "\n\t");
+    private final static URI API_URI = URI.create("https://slack.com/api/chat.postMessage");
+
+    /**
+     * Content type of messages posted with a token.
+     */
+    private final static String FORM_CONTENT_TYPE = "application/x-www-form-urlencoded";
+
+    /**
+     * Estimated number of bytes an attachment adds to a message in addition
+     * to the message text (color, author, timestamp and JSON syntax).
+     */
+    private final static int ATTACHMENT_OVERHEAD = 200;
+
+    /**
+     * Text of messages containing important events.
+     */
+    private final static String IMPORTANT_TEXT = "<!everyone> please have a look at this log message:";
+
+    /**
+     * Number of characters reserved for the marker added to truncated events.
+     */
+    private final static int TRUNCATION_MARKER_LENGTH = 40;
+
+    /**
+     * Time to wait after being rate limited if Slack does not specify it.
+     */
+    private final static long DEFAULT_RETRY_AFTER = 1_000;
+
+    /**
+     * Maximum number of attempts to post a message that is rejected because
+     * of rate limiting, independent of the retry policy.
+     */
+    private final static int MAX_RATE_LIMITED_ATTEMPTS = 3;
+
+    /**
+     * Maximum number of spooled messages combined into one message.
+     */
+    private final static int SPOOL_REPLAY_MAX_MESSAGES = 20;
+
+    /**
+     * Maximum number of messages posted from the spool at once.
+     */
+    private final static int SPOOL_REPLAY_MAX_POSTS = 10;
+
+    /**
+     * Time to wait for the spool replay thread to terminate on stop.
+     */
+    private final static long SPOOL_REPLAY_JOIN_MILLIS = 1_000;
+
+    /**
+     * Interval in milliseconds in which the load shedding level is updated.
+     */
+    private final static long SHEDDING_UPDATE_INTERVAL = 250;
+
+    /**
+     * Maximum number of destinations of channels given in the event context
+     * kept for reuse.
+     */
+    private final static int MAX_CONTEXT_DESTINATIONS = 1000;
+
+    /**
+     * Maximum capacity of a render buffer kept for reuse.
+     */
+    private final static int MAX_RENDER_BUFFER_CAPACITY = 64 * 1024;
+
+    /**
+     * Maximum number of payload writers kept for reuse.
+     */
+    private final static int MAX_POOLED_WRITERS = 8;
+
+    /**
+     * Maximum number of render buffers kept for reuse.
+     */
+    private final static int MAX_POOLED_RENDER_BUFFERS = 8;
+
+    private static Layout<ILoggingEvent> defaultLayout = new SlackLayout();
+
+    private String webhookUri;
+    private String token;
+    private String channel;
+    private String username;
+    private String iconEmoji;
+    private Layout<ILoggingEvent> layout = defaultLayout;
+
+    private final List<SlackRoute> routes = new ArrayList<>();
+    private String channelContextKey;
+    private final ConcurrentMap<String, SlackDestination> contextDestinations = new ConcurrentHashMap<>();
+
+    private int timeout = 30_000;
+
+    private SlackTransport transport;
+    private SlackTransport activeTransport;
+
+    private String spoolDirectory;
+    private int spoolSegmentSize = 4 * 1024 * 1024;
+    private long spoolMaxSize = 64 * 1024 * 1024;
+    private long spoolReplayInterval = 10_000;
+
+    private boolean jmx = true;
+    private final List<SlackMetricsListener> metricsListeners = new ArrayList<>();
+
+    private int circuitBreakerThreshold = 5;
+    private long circuitBreakerCoolDown = 30_000;
+
+    private int shortFieldLimit = 25;
+    private int maxEventLength = 8_000;
+
+    private boolean async = false;
+    private int queueSize = 256;
+    private long queueMaxBytes = 8 * 1024 * 1024;
+    private String overflowPolicy = "drop-newest";
+    private String overflowLevel = "WARN";
+    private long overflowTimeout = 100;
+    private int senderThreads = 1;
+    private boolean virtualThreads = false;
+    private String waitStrategy = "park";
+    private int maxInFlightPerDestination = 4;
+    private int maxLanes = 10;
+    private long drainTimeout = 5_000;
+
+    private int batchMaxEvents = 1;
+    private int batchMaxBytes = 32_000;
+    private long batchLinger = 1_000;
+
+    private double rateLimit = 1;
+    private int rateLimitBurst = 5;
+
+    private int retryMaxAttempts = 3;
+    private long retryInitialBackoff = 500;
+    private long retryMaxBackoff = 30_000;
+    private int retryBudget = 10;
+    private double retryBudgetRatio = 0.1;
+
+    private long duplicateWindow = 0;
+    private int duplicateCacheSize = 1000;
+
+    private long digestInterval = 0;
+    private int digestTopGroups = 10;
+    private int digestMaxGroups = 1000;
+
+    private boolean loadShedding = false;
+    private double sheddingQueueThreshold = 0.5;
+    private long sheddingLatencyThreshold = 2_000;
+    private long sheddingNoticeInterval = 60_000;
+
+    private SlackAppenderMetrics metrics;
+    private ObjectName metricsName;
+
+    private LoggerContext loggerContext;
+    private Map<String, String> webhookFields;
+    private byte[] webhookMessageEnd;
+    private byte[] importantWebhookMessageEnd;
+    private String tokenFormFields;
+    private SlackWaitStrategy activeWaitStrategy;
+    private SlackOverflowPolicy activeOverflowPolicy;
+    private Level activeOverflowLevel;
+    private SlackDestination defaultDestination;
+    private boolean routeByContext;
+    private volatile ConcurrentMap<SlackDestination, SlackDispatcher> lanes;
+    private final Object laneLock = new Object();
+    private boolean lanesExhausted;
+    private SlackRateLimiter rateLimiter;
+    private SlackConcurrencyLimiter concurrencyLimiter;
+    private SlackRetryPolicy retryPolicy;
+    private SlackDuplicateSuppressor duplicateSuppressor;
+    private ScheduledFuture<?> duplicateExpiry;
+    private SlackDigest digest;
+    private ScheduledFuture<?> digestClose;
+    private SlackLoadShedder loadShedder;
+    private ScheduledFuture<?> sheddingUpdate;
+    private long shedSinceNotice;
+    private long lastShedNotice;
+    private SlackSpool spool;
+    private ScheduledExecutorService spoolReplay;
+    private volatile boolean dropping;
+    // owned by the appender rather than the logging threads, so stop() releases them
+    private final BlockingQueue<SlackPayloadWriter> writers = new ArrayBlockingQueue<>(MAX_POOLED_WRITERS);
+    private final BlockingQueue<StringBuilder> renderBuffers = new ArrayBlockingQueue<>(MAX_POOLED_RENDER_BUFFERS);
+    private final LongFunction<SlackEvent> dropSummary = this::dropSummary;
+
+    @Override
+    public void start() {
+        if (async) {
+            if (queueSize < 1) {
+                addError("Invalid queue size " + queueSize + " for Slack appender " + getName());
+                return;
+            }
+            if (senderThreads < 1) {
+                addError("Invalid number of sender threads " + senderThreads + " for Slack appender " + getName());
+                return;
+            }
+            if (batchMaxEvents < 1) {
+                addError("Invalid maximum batch size " + batchMaxEvents + " for Slack appender " + getName());
+                return;
+            }
+            if (maxLanes < 1) {
+                addError("Invalid maximum number of destinations " + maxLanes + " for Slack appender " + getName());
+                return;
+            }
+            try {
+                activeWaitStrategy = SlackWaitStrategy.valueOf(waitStrategy.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException | NullPointerException e) {
+                addError("Invalid wait strategy " + waitStrategy + " for Slack appender " + getName()
+                        + ", expected spin, yield or park");
+                return;
+            }
+            try {
+                activeOverflowPolicy = SlackOverflowPolicy.valueOf(
+                        overflowPolicy.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+            } catch (IllegalArgumentException | NullPointerException e) {
+                addError("Invalid overflow policy " + overflowPolicy + " for Slack appender " + getName()
+                        + ", expected drop-newest, drop-oldest, drop-below-level or block");
+                return;
+            }
+            activeOverflowLevel = Level.toLevel(overflowLevel, Level.WARN);
+        }
+
+        loggerContext = getContext() instanceof LoggerContext ? (LoggerContext) getContext() : null;
+        try {
+            compileTemplates();
+            defaultDestination = destination(null, null);
+            routeByContext = channelContextKey != null && !channelContextKey.isEmpty();
+            contextDestinations.clear();
+            for (SlackRoute route : routes) {
+                route.destination = destination(route.getWebhookUri(), route.getChannel());
+                if (route.destination == null) {
+                    addError("Slack route to " + route.getChannel() + " of appender " + getName()
+                            + " has neither a webhook nor a token, ignoring it");
+                }
+                else if (route.hasInvalidLevel()) {
+                    addError("Slack route to " + route.getChannel() + " of appender " + getName()
+                            + " has an invalid level " + route.getLevel() + ", ignoring it");
+                    route.destination = null;
+                }
+                routeByContext |= route.getContextKey() != null;
+            }
+        } catch (IllegalArgumentException e) {
+            addError("Invalid webhook URI for Slack appender " + getName(), e);
+            return;
+        }
+
+        startMetrics();
+
+        if (transport == null) {
+            transport = new HttpClientSlackTransport();
+        }
+        activeTransport = transport;
+        if (circuitBreakerThreshold > 0) {
+            activeTransport = new SlackCircuitBreaker(transport, circuitBreakerThreshold, circuitBreakerCoolDown, this);
+        }
+        activeTransport.start(timeout);
+
+        if (maxInFlightPerDestination > 0) {
+            // also in sync mode, where every logging thread may post at the same time
+            concurrencyLimiter = new SlackConcurrencyLimiter(maxInFlightPerDestination);
+        }
+        if (async) {
+            if (rateLimit > 0) {
+                rateLimiter = new SlackRateLimiter(rateLimit, rateLimitBurst);
+            }
+            if (virtualThreads && !SlackSenderThreads.isVirtualSupported()) {
+                addWarn("Virtual threads require Java 21, Slack appender " + getName()
+                        + " uses platform threads instead");
+            }
+            if (retryMaxAttempts > 1) {
+                retryPolicy = new SlackRetryPolicy(retryMaxAttempts, retryInitialBackoff, retryMaxBackoff,
+                        retryBudget, retryBudgetRatio);
+            }
+            lanesExhausted = false;
+            lanes = new ConcurrentHashMap<>();
+            if (defaultDestination != null) {
+                lane(defaultDestination);
+            }
+        }
+
+        if (spoolDirectory != null && !spoolDirectory.trim().isEmpty()) {
+            SlackSpool spool = new SlackSpool(Paths.get(spoolDirectory), spoolSegmentSize, spoolMaxSize, this);
+            try {
+                spool.open();
+                this.spool = spool;
+            } catch (IOException | RuntimeException e) {
+                addError("Could not open Slack spool in " + spoolDirectory + ", continuing without", e);
+            }
+        }
+
+        if (duplicateWindow > 0) {
+            duplicateSuppressor = new SlackDuplicateSuppressor(loggerContext, duplicateWindow, duplicateCacheSize);
+            long period = Math.max(100, duplicateWindow / 2);
+            duplicateExpiry = getContext().getScheduledExecutorService().scheduleAtFixedRate(
+                    () -> expireDuplicates(System.currentTimeMillis()), period, period, TimeUnit.MILLISECONDS);
+        }
+        if (digestInterval > 0) {
+            digest = new SlackDigest(loggerContext, getName(), digestTopGroups, digestMaxGroups, System.currentTimeMillis());
+            digestClose = getContext().getScheduledExecutorService().scheduleAtFixedRate(
+                    this::postDigest, digestInterval, digestInterval, TimeUnit.MILLISECONDS);
+        }
+        if (loadShedding) {
+            loadShedder = new SlackLoadShedder(sheddingQueueThreshold, sheddingLatencyThreshold);
+            shedSinceNotice = 0;
+            lastShedNotice = System.currentTimeMillis();
+            sheddingUpdate = getContext().getScheduledExecutorService().scheduleAtFixedRate(
+                    this::updateShedding, SHEDDING_UPDATE_INTERVAL, SHEDDING_UPDATE_INTERVAL, TimeUnit.MILLISECONDS);
+        }
+        super.start();
+
+        if (spool != null) {
+            // own thread, as posting may wait for the rate limit or Slack to respond
+            String name = "slack-appender-" + getName() + "-spool";
+            spoolReplay = Executors.newSingleThreadScheduledExecutor(
+                    task -> SlackSenderThreads.newThread(name, task, false));
+            spoolReplay.scheduleWithFixedDelay(this::replaySpool, 0, spoolReplayInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (!isStarted()) {
+            return;
+        }
+        super.stop();
+        if (duplicateSuppressor != null) {
+            duplicateExpiry.cancel(false);
+            duplicateExpiry = null;
+            // report remaining repetitions
+            expireDuplicates(Long.MAX_VALUE);
+            duplicateSuppressor = null;
+        }
+        if (digest != null) {
+            digestClose.cancel(false);
+            digestClose = null;
+            // post what was collected so far
+            postDigest();
+            digest = null;
+        }
+        if (loadShedder != null) {
+            sheddingUpdate.cancel(false);
+            sheddingUpdate = null;
+            try {
+                shedSinceNotice += loadShedder.drainShedCount();
+                postShedNotice(System.currentTimeMillis());
+            } catch (RuntimeException e) {
+                addError("Could not report shed events of Slack appender " + getName(), e);
+            }
+            loadShedder = null;
+        }
+        if (spoolReplay != null) {
+            spoolReplay.shutdownNow();
+            try {
+                spoolReplay.awaitTermination(SPOOL_REPLAY_JOIN_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            spoolReplay = null;
+        }
+        ConcurrentMap<SlackDestination, SlackDispatcher> lanes;
+        synchronized (laneLock) {
+            lanes = this.lanes;
+            this.lanes = null;
+        }
+        if (lanes != null) {
+            // lanes drain in parallel until a common deadline
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(drainTimeout);
+            for (SlackDispatcher lane : lanes.values()) {
+                lane.close();
+            }
+            long dropped = 0;
+            long flushed = 0;
+            long failed = 0;
+            long interrupted = 0;
+            long discarded = 0;
+            long spooled = 0;
+            for (Map.Entry<SlackDestination, SlackDispatcher> entry : lanes.entrySet()) {
+                SlackDispatcher lane = entry.getValue();
+                List<SlackEvent> abandoned = lane.drain(deadline);
+                dropped += lane.getDroppedCount();
+                flushed += lane.getFlushedCount();
+                failed += lane.getFailedCount();
+                interrupted += lane.getInterruptedCount();
+                if (spool != null) {
+                    // posted once the application is started again
+                    for (int i = 0; i < abandoned.size(); i += batchMaxEvents) {
+                        deliver(entry.getKey(), abandoned.subList(i, Math.min(abandoned.size(), i + batchMaxEvents)),
+                                true);
+                    }
+                    spooled += abandoned.size();
+                }
+                else {
+                    discarded += abandoned.size();
+                }
+            }
+            if (dropped > 0) {
+                addWarn("Slack appender " + getName() + " dropped " + dropped + " events because its queue was full");
+            }
+            if (flushed > 0) {
+                addInfo("Slack appender " + getName() + " flushed " + flushed + " pending events on stop");
+            }
+            if (failed > 0) {
+                addWarn("Slack appender " + getName() + " failed to post " + failed + " pending events on stop");
+            }
+            if (interrupted > 0) {
+                addWarn("Slack appender " + getName() + " interrupted posting " + interrupted
+                        + " pending events after " + drainTimeout + " ms");
+            }
+            if (spooled > 0) {
+                addInfo("Slack appender " + getName() + " spooled " + spooled
+                        + " pending events that could not be posted within " + drainTimeout + " ms");
+            }
+            if (discarded > 0) {
+                metrics.eventsDropped((int) discarded);
+                addWarn("Slack appender " + getName() + " abandoned " + discarded
+                        + " pending events that could not be posted within " + drainTimeout + " ms");
+            }
+        }
+        if (spool != null) {
+            spool.close();
+            spool = null;
+        }
+        rateLimiter = null;
+        concurrencyLimiter = null;
+        retryPolicy = null;
+        activeTransport.stop();
+        writers.clear();
+        renderBuffers.clear();
+        stopMetrics();
+    }
+
+    private void startMetrics() {
+        metrics = new SlackAppenderMetrics(getName(), this::getQueueDepth, this::getSheddingLevel, this);
+        for (SlackMetricsListener listener : metricsListeners) {
+            metrics.addListener(listener);
+        }
+        try {
+            for (SlackMetricsListener listener : ServiceLoader.load(SlackMetricsListener.class)) {
+                metrics.addListener(listener);
+            }
+        } catch (RuntimeException | Error e) {
+            addWarn("Could not load Slack metrics listeners", e);
+        }
+
+        if (jmx) {
+            try {
+                String contextName = getContext() != null ? getContext().getName() : null;
+                metricsName = new ObjectName("com.github.maricn.logback:type=SlackAppender"
+                        + ",context=" + ObjectName.quote(String.valueOf(contextName))
+                        + ",name=" + ObjectName.quote(String.valueOf(getName())));
+                ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, metricsName);
+            } catch (Exception e) {
+                metricsName = null;
+                addWarn("Could not register Slack appender metrics MBean", e);
+            }
+        }
+    }
+
+    private void stopMetrics() {
+        if (metricsName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(metricsName);
+            } catch (Exception e) {
+                addWarn("Could not unregister Slack appender metrics MBean", e);
+            }
+            metricsName = null;
+        }
+    }
+
+    @Override
+    public void doAppend(ILoggingEvent evt) {
+        SlackAppenderMetrics metrics = this.metrics;
+        if (metrics != null && isStarted()) {
+            metrics.eventReceived();
+        }
+        super.doAppend(evt);
+    }
+
+    @Override
+    public FilterReply getFilterChainDecision(ILoggingEvent evt) {
+        FilterReply reply = super.getFilterChainDecision(evt);
+        SlackAppenderMetrics metrics = this.metrics;
+        if (reply == FilterReply.DENY && metrics != null) {
+            metrics.eventFiltered();
+        }
+        return reply;
+    }
+
+    @Override
+    protected void append(final ILoggingEvent evt) {
+        boolean important = Markers.findMarker(evt.getMarker(), Markers.MARKER_NAME_IMPORTANT) != null;
+        SlackDigest digest = this.digest;
+        if (digest != null && !important) {
+            // important events are still posted right away
+            digest.add(evt);
+            metrics.eventFiltered();
+            return;
+        }
+
+        SlackDuplicateSuppressor duplicateSuppressor = this.duplicateSuppressor;
+        if (duplicateSuppressor != null && !important) {
+            // errors are suppressed as well, important events are always posted
+            boolean accepted = duplicateSuppressor.accept(evt);
+            for (ILoggingEvent rollUp : duplicateSuppressor.drainRollUps()) {
+                dispatch(rollUp);
+            }
+            if (!accepted) {
+                metrics.eventFiltered();
+                return;
+            }
+        }
+
+        SlackLoadShedder loadShedder = this.loadShedder;
+        if (loadShedder != null && loadShedder.shed(evt, important)) {
+            metrics.eventShed();
+            return;
+        }
+
+        dispatch(evt);
+    }
+
+    /**
+     * Hand off an event for asynchronous delivery, or deliver it directly if
+     * not in async mode.
+     *
+     * @param evt the event
+     */
+    private void dispatch(final ILoggingEvent evt) {
+        SlackDestination destination = route(evt);
+        if (destination == null) {
+            // just ignore if there is neither token nor webhook configured
+            return;
+        }
+
+        if (async) {
+            SlackDispatcher lane = lane(destination);
+            if (lane == null) {
+                // stopped, or no destination left
+                metrics.eventsDropped(1);
+                return;
+            }
+            // only the snapshot is queued, the event itself is not retained
+            int evicted = lane.offer(SlackEvent.of(evt, render(evt)));
+            if (evicted >= 0) {
+                metrics.eventQueued();
+                if (evicted > 0) {
+                    // older events were dropped instead
+                    metrics.eventsDropped(evicted);
+                }
+                if (dropping) {
+                    dropping = false;
+                }
+                if (evicted == 0) {
+                    // only once events are no longer displaced
+                    lane.reportDrops(dropSummary);
+                }
+            }
+            else {
+                // the event and the queued events dropped before giving up
+                metrics.eventsDropped(-evicted);
+                if (!dropping) {
+                    dropping = true;
+                    addWarn("Slack appender queue is full, dropping events (" + destination + ")");
+                }
+            }
+        }
+        else {
+            deliver(destination, Collections.singletonList(SlackEvent.of(evt, render(evt))), false);
+        }
+    }
+
+    /**
+     * Create a message stating the number of events dropped because the
+     * queue of a destination was full.
+     *
+     * @param dropped the number of dropped events
+     * @return the message
+     */
+    private SlackEvent dropSummary(long dropped) {
+        String message = dropped + (dropped == 1 ? " event was" : " events were")
+                + " dropped because the Slack appender queue was full";
+        return new SlackEvent(Level.WARN, getName(), System.currentTimeMillis(), new String[] { message },
+                Collections.emptyMap(), false);
+    }
+
+    /**
+     * Determine the destination of an event. A channel given in the event
+     * context takes precedence over the routes, the first matching route
+     * over the default destination.
+     *
+     * @param evt the event
+     * @return the destination, <code>null</code> if neither webhook nor token
+     *   are configured
+     */
+    private SlackDestination route(ILoggingEvent evt) {
+        if (!routeByContext && routes.isEmpty()) {
+            return defaultDestination;
+        }
+
+        Map<String, String> context = routeByContext ? Markers.getContext(evt.getMarker()) : null;
+        if (channelContextKey != null && !channelContextKey.isEmpty()) {
+            String contextChannel = context.get(channelContextKey);
+            if (contextChannel != null && !contextChannel.trim().isEmpty()) {
+                SlackDestination destination = contextDestinations.get(contextChannel);
+                if (destination == null) {
+                    if (contextDestinations.size() >= MAX_CONTEXT_DESTINATIONS) {
+                        contextDestinations.clear();
+                    }
+                    // created once per channel, as it includes the encoded message start
+                    destination = destination(null, contextChannel.trim());
+                    if (destination != null) {
+                        contextDestinations.put(contextChannel, destination);
+                    }
+                }
+                if (destination != null) {
+                    return destination;
+                }
+            }
+        }
+        for (SlackRoute route : routes) {
+            if (route.destination != null && route.matches(evt, context)) {
+                return route.destination;
+            }
+        }
+        return defaultDestination;
+    }
+
+    /**
+     * Create a destination, using the webhook or channel of the appender if
+     * not specified.
+     *
+     * @param routeWebhookUri the webhook URI, may be <code>null</code>
+     * @param routeChannel the channel, may be <code>null</code>
+     * @return the destination, <code>null</code> if neither webhook nor token
+     *   are configured
+     */
+    private SlackDestination destination(String routeWebhookUri, String routeChannel) {
+        String destinationUri = routeWebhookUri != null && !routeWebhookUri.isEmpty() ? routeWebhookUri : webhookUri;
+        String destinationChannel = routeChannel != null && !routeChannel.trim().isEmpty() ? routeChannel : channel;
+        if (destinationUri != null && !destinationUri.isEmpty()) {
+            Map<String, String> fields = new LinkedHashMap<>();
+            if (destinationChannel != null && !destinationChannel.trim().isEmpty()) {
+                fields.put("channel", destinationChannel);
+            }
+            fields.putAll(webhookFields);
+            return new SlackDestination(destinationUri, destinationChannel,
+                    SlackPayloadWriter.encodeMessageStart(fields), null);
+        }
+        if (token != null && !token.isEmpty()) {
+            String formFields = tokenFormFields;
+            if (destinationChannel != null) {
+                formFields = "channel=" + URLEncoder.encode(destinationChannel, StandardCharsets.UTF_8) + "&"
+                        + formFields;
+            }
+            return new SlackDestination(null, destinationChannel, null, formFields);
+        }
+        return null;
+    }
+
+    /**
+     * Encode the parts of messages that only depend on the configuration,
+     * so they are not serialized again for each message.
+     */
+    private void compileTemplates() {
+        webhookFields = new LinkedHashMap<>();
+        if (username != null && !username.trim().isEmpty()) {
+            webhookFields.put("username", username);
+        }
+        if (iconEmoji != null && !iconEmoji.trim().isEmpty()) {
+            boolean isUrl = false;
+            try {
+                URI uri = URI.create(iconEmoji);
+                isUrl = uri.isAbsolute() && uri.getScheme().startsWith("http");
+            } catch (Exception e) {
+                // ignore
+            }
+
+            if (isUrl) {
+                // use icon URL if a URL is provided
+                webhookFields.put("icon_url", iconEmoji);
+            }
+            else {
+                String emoji = iconEmoji;
+                /*
+                 * Ensure that the emoji is correctly identified.
+                 *
+                 * This is done to support configurations like
+                 * ${SLACK_LOG_ICON:-exclamation} in the logback config
+                 * file, because it does not seem possible to put colons
+                 * there (and I did not find a way to escape them).
+                 */
+                if (!emoji.startsWith(":")) {
+                    emoji = ":" + emoji;
+                }
+                if (!emoji.endsWith(":")) {
+                    emoji = emoji + ":";
+                }
+
+                webhookFields.put("icon_emoji", emoji);
+            }
+        }
+        webhookMessageEnd = SlackPayloadWriter.encodeMessageEnd(null);
+        importantWebhookMessageEnd = SlackPayloadWriter.encodeMessageEnd(IMPORTANT_TEXT);
+
+        StringBuilder formFields = new StringBuilder();
+        if (username != null) {
+            formFields.append("username=").append(URLEncoder.encode(username, StandardCharsets.UTF_8)).append('&');
+        }
+        if (iconEmoji != null) {
+            formFields.append("icon_emoji=").append(URLEncoder.encode(iconEmoji, StandardCharsets.UTF_8));
+        }
+        tokenFormFields = formFields.toString();
+    }
+
+    /**
+     * Get the delivery lane of a destination, starting it if necessary. Each
+     * destination has its own queue and sender threads, so a slow or rate
+     * limited destination does not hold up the others.
+     *
+     * @param destination the destination
+     * @return the lane, <code>null</code> if the appender was stopped
+     */
+    private SlackDispatcher lane(SlackDestination destination) {
+        ConcurrentMap<SlackDestination, SlackDispatcher> lanes = this.lanes;
+        if (lanes == null) {
+            return null;
+        }
+        SlackDispatcher lane = lanes.get(destination);
+        if (lane != null) {
+            return lane;
+        }
+
+        synchronized (laneLock) {
+            if (this.lanes != lanes) {
+                // stopped in the meantime
+                return null;
+            }
+            lane = lanes.get(destination);
+            if (lane == null) {
+                if (lanes.size() >= maxLanes && !destination.equals(defaultDestination)) {
+                    if (!lanesExhausted) {
+                        lanesExhausted = true;
+                        addWarn("Slack appender " + getName() + " reached its maximum of " + maxLanes
+                                + " destinations, posting events for " + destination + " and further"
+                                + " destinations to the default destination");
+                    }
+                    return defaultDestination != null ? lane(defaultDestination) : null;
+                }
+
+                String name = "slack-appender-" + getName();
+                if (!lanes.isEmpty()) {
+                    name += "-" + lanes.size();
+                }
+                SlackPriorityQueue queue = new SlackPriorityQueue(queueSize, queueMaxBytes, activeWaitStrategy,
+                        activeOverflowPolicy, activeOverflowLevel, overflowTimeout);
+                lane = new SlackDispatcher(name, queue, senderThreads, virtualThreads, batchMaxEvents, batchLinger,
+                        events -> deliver(destination, events, false));
+                lane.start();
+                lanes.put(destination, lane);
+            }
+            return lane;
+        }
+    }
+
+    /**
+     * Called periodically to post roll-ups for repeated events.
+     *
+     * @param now the current time in milliseconds
+     */
+    private void expireDuplicates(long now) {
+        SlackDuplicateSuppressor duplicateSuppressor = this.duplicateSuppressor;
+        if (duplicateSuppressor != null) {
+            try {
+                duplicateSuppressor.expire(now);
+                for (ILoggingEvent rollUp : duplicateSuppressor.drainRollUps()) {
+                    dispatch(rollUp);
+                }
+            } catch (RuntimeException e) {
+                // must not cancel the scheduled task
+                addError("Could not post repeated events of Slack appender " + getName(), e);
+            }
+        }
+    }
+
+    /**
+     * Called periodically to post the digest of the past interval.
+     */
+    private void postDigest() {
+        SlackDigest digest = this.digest;
+        if (digest != null) {
+            try {
+                ILoggingEvent summary = digest.close(System.currentTimeMillis());
+                if (summary != null) {
+                    dispatch(summary);
+                }
+            } catch (RuntimeException e) {
+                // must not cancel the scheduled task
+                addError("Could not post digest of Slack appender " + getName(), e);
+            }
+        }
+    }
+
+    /**
+     * Called periodically to adapt the load shedding level to the backlog
+     * and latency, and to report shed events.
+     */
+    private void updateShedding() {
+        SlackLoadShedder loadShedder = this.loadShedder;
+        if (loadShedder == null) {
+            return;
+        }
+
+        try {
+            int previous = loadShedder.getLevel();
+            int level = loadShedder.update(getQueueFill());
+            if (level > 0 && previous == 0) {
+                addWarn("Slack appender " + getName() + " cannot keep up, shedding events (queue depth "
+                        + getQueueDepth() + ", latency " + Math.round(loadShedder.getLatencyMillis()) + " ms)");
+            }
+            else if (level == 0 && previous > 0) {
+                addInfo("Slack appender " + getName() + " stopped shedding events");
+            }
+
+            shedSinceNotice += loadShedder.drainShedCount();
+            long now = System.currentTimeMillis();
+            if (level == 0 || now - lastShedNotice >= sheddingNoticeInterval) {
+                postShedNotice(now);
+            }
+        } catch (RuntimeException e) {
+            // must not cancel the scheduled task
+            addError("Could not update load shedding of Slack appender " + getName(), e);
+        }
+    }
+
+    /**
+     * Post a notice about the events shed since the last notice, if any.
+     *
+     * @param now the current time in milliseconds
+     */
+    private void postShedNotice(long now) {
+        if (shedSinceNotice > 0) {
+            long seconds = Math.max(1, (now - lastShedNotice + 999) / 1000);
+            dispatch(createEvent(loggerContext, Level.WARN, getName(), now, shedSinceNotice
+                    + " events shed in the last " + seconds + "s because Slack could not keep up"));
+        }
+        shedSinceNotice = 0;
+        lastShedNotice = now;
+    }
+
+    /**
+     * Create an event reported by the appender itself. It has no caller
+     * data, so it can be rendered by layouts asking for it.
+     *
+     * @param loggerContext the logger context, may be <code>null</code>
+     * @param level the level
+     * @param loggerName the logger name
+     * @param timestamp the time of the event in milliseconds
+     * @param message the message
+     * @return the event
+     */
+    static LoggingEvent createEvent(LoggerContext loggerContext, Level level, String loggerName, long timestamp,
+            String message) {
+        LoggingEvent evt = new LoggingEvent();
+        evt.setLevel(level);
+        evt.setLoggerName(loggerName);
+        evt.setThreadName(Thread.currentThread().getName());
+        evt.setMDCPropertyMap(Collections.emptyMap());
+        evt.setTimeStamp(timestamp);
+        evt.setMessage(message);
+        evt.setCallerData(CallerData.EMPTY_CALLER_DATA_ARRAY);
+        if (loggerContext != null) {
+            evt.setLoggerContext(loggerContext);
+            evt.setLoggerContextRemoteView(loggerContext.getLoggerContextRemoteView());
+        }
+        return evt;
+    }
+
+    /**
+     * @return the fill ratio of the fullest queue, by events per priority or
+     *   bytes, <code>0</code> if not in async mode
+     */
+    private double getQueueFill() {
+        ConcurrentMap<SlackDestination, SlackDispatcher> lanes = this.lanes;
+        if (lanes == null) {
+            return 0;
+        }
+        double fill = 0;
+        for (SlackDispatcher lane : lanes.values()) {
+            fill = Math.max(fill, lane.getQueueFill());
+        }
+        return fill;
+    }
+
+    /**
+     * Deliver events to Slack on the current thread.
+     *
+     * @param destination the destination to post to
+     * @param events the events to deliver, combined into as few messages as
+     *   the batch limits allow
+     * @param spoolOnly if the messages should be added to the spool instead
+     *   of being posted
+     * @return <code>true</code> if all messages were posted or added to the
+     *   spool
+     */
+    private boolean deliver(final SlackDestination destination, final List<SlackEvent> events, boolean spoolOnly) {
+        SlackPayloadWriter writer = acquireWriter();
+        try {
+            if (destination.webhookUri != null) {
+                sendMessageWithWebhookUri(writer, destination, events, spoolOnly);
+            } else {
+                sendMessageWithToken(writer, destination, events, spoolOnly);
+            }
+            return true;
+        } catch (SlackCircuitOpenException ex) {
+            // already reported by the circuit breaker
+            return false;
+        } catch (Exception ex) {
+            addError("Error posting log to Slack.com (" + destination + "): "
+                    + (events.size() == 1 ? events.get(0) : events.size() + " events"), ex);
+            return false;
+        } finally {
+            releaseWriter(writer);
+        }
+    }
+
+    private void sendMessageWithWebhookUri(SlackPayloadWriter writer, final SlackDestination destination,
+            final List<SlackEvent> events, boolean spoolOnly) throws IOException {
+        boolean important = false;
+        long started = System.nanoTime();
+
+        for (SlackEvent evt : events) {
+            String[] parts = evt.parts;
+
+            if (writer.getAttachmentCount() > 0 && writer.size() + estimateSize(parts) > batchMaxBytes) {
+                // batch is full -> send what we have so far
+                postWebhookMessage(writer, destination, important, started, spoolOnly);
+                important = false;
+                started = System.nanoTime();
+            }
+            if (writer.getAttachmentCount() == 0) {
+                writer.startMessage(destination.messageStart);
+            }
+
+            // determine if event is "important"
+            important |= evt.important;
+            writeAttachment(writer, evt, parts);
+        }
+
+        if (writer.getAttachmentCount() > 0) {
+            postWebhookMessage(writer, destination, important, started, spoolOnly);
+        }
+    }
+
+    private void postWebhookMessage(SlackPayloadWriter writer, SlackDestination destination, boolean important,
+            long started, boolean spoolOnly) throws IOException {
+        int events = writer.getAttachmentCount();
+        final byte[] bytes = writer.endMessage(important ? importantWebhookMessageEnd : webhookMessageEnd);
+        metrics.serialization(System.nanoTime() - started);
+
+        postMessage(destination.uri, destination.key, "application/json", bytes, events, spoolOnly);
+    }
+
+    private void writeAttachment(SlackPayloadWriter writer, SlackEvent evt, String[] parts) throws IOException {
+        String mainMsg = parts[0];
+        String levelColor = getDefaultLevelColor(evt.level);
+
+        Map<String, String> contextInfo = evt.context;
+        //TODO also include extra information that may be configured?
+
+        long timestamp = evt.timestamp / 1000;
+
+        String author = evt.loggerName;
+
+        if (parts.length > 1 && !parts[1].trim().isEmpty()) {
+            // we have two parts -> use main part a pretext
+            writer.writeAttachment(mainMsg, parts[1], mainMsg, levelColor, contextInfo, shortFieldLimit,
+                    author, timestamp);
+        }
+        else {
+            // just message -> use as attachment text
+            writer.writeAttachment(null, mainMsg, mainMsg, levelColor, contextInfo, shortFieldLimit,
+                    author, timestamp);
+        }
+    }
+
+    /**
+     * @return a payload writer from the pool, or a new one if none is
+     *   available
+     */
+    private SlackPayloadWriter acquireWriter() {
+        SlackPayloadWriter writer = writers.poll();
+        return writer != null ? writer : new SlackPayloadWriter();
+    }
+
+    /**
+     * Return a payload writer to the pool, it is discarded if the pool is
+     * full.
+     *
+     * @param writer the writer
+     */
+    private void releaseWriter(SlackPayloadWriter writer) {
+        writer.reset();
+        if (isStarted()) {
+            writers.offer(writer);
+        }
+    }
+
+    /**
+     * @return a render buffer from the pool, or a new one if none is
+     *   available
+     */
+    private StringBuilder acquireRenderBuffer() {
+        StringBuilder buffer = renderBuffers.poll();
+        return buffer != null ? buffer : new StringBuilder(1024);
+    }
+
+    /**
+     * Return a render buffer to the pool, it is discarded if the pool is
+     * full or if it grew beyond the maximum capacity.
+     *
+     * @param buffer the buffer
+     */
+    private void releaseRenderBuffer(StringBuilder buffer) {
+        // do not hold on to the buffer of an exceptionally large event
+        if (isStarted() && buffer.capacity() <= MAX_RENDER_BUFFER_CAPACITY) {
+            buffer.setLength(0);
+            renderBuffers.offer(buffer);
+        }
+    }
+
+    /**
+     * Render an event and split it into its first line and the remaining
+     * lines, truncated to the maximum event length. The default layout stops
+     * copying the event once the maximum length is reached.
+     *
+     * @param evt the event
+     * @return the first line and, if present, the remaining lines
+     */
+    String[] render(ILoggingEvent evt) {
+        Layout<ILoggingEvent> layout = this.layout;
+        if (layout instanceof SlackLayout) {
+            // render into a reused buffer, only the resulting parts are copied
+            StringBuilder buffer = acquireRenderBuffer();
+            try {
+                int length = ((SlackLayout) layout).doLayout(evt, buffer, maxEventLength);
+                return splitMessage(buffer, length, maxEventLength);
+            } finally {
+                releaseRenderBuffer(buffer);
+            }
+        }
+        return splitMessage(layout.doLayout(evt), maxEventLength);
+    }
+
+    /**
+     * Split a message into its first line and the remaining lines, see
+     * {@link #splitMessage(CharSequence, int, int)}.
+     *
+     * @param message the message
+     * @param maxLength the maximum number of characters, <code>0</code> for
+     *   no limit
+     * @return the first line and, if present, the remaining lines
+     */
+    static String[] splitMessage(CharSequence message, int maxLength) {
+        return splitMessage(message, message.length(), maxLength);
+    }
+
+    /**
+     * Split a message into its first line and the remaining lines. Only the
+     * part of the message within the maximum length is copied, the rest is
+     * replaced by a truncation marker. If possible the message is cut after
+     * a complete line, and never within a surrogate pair. The parts
+     * including the marker are no longer than the maximum length.
+     *
+     * @param message the message, may already be cut off after the maximum
+     *   length
+     * @param length the length of the complete message
+     * @param maxLength the maximum number of characters, <code>0</code> for
+     *   no limit
+     * @return the first line and, if present, the remaining lines
+     */
+    static String[] splitMessage(CharSequence message, int length, int maxLength) {
+        int end = Math.min(length, message.length());
+        String marker = null;
+        if (maxLength > 0 && length > maxLength) {
+            boolean shortMarker = maxLength < TRUNCATION_MARKER_LENGTH;
+            end = shortMarker ? maxLength - 1 : maxLength - TRUNCATION_MARKER_LENGTH;
+            // prefer to cut after a line, unless that drops more than half of the text
+            for (int i = end - 1; i > end / 2; i--) {
+                if (message.charAt(i) == '\n') {
+                    end = i + 1;
+                    break;
+                }
+            }
+            if (end > 0 && Character.isHighSurrogate(message.charAt(end - 1))) {
+                // do not split a surrogate pair
+                end--;
+            }
+            marker = shortMarker ? "\u2026" : "\u2026 [" + (length - end) + " characters truncated]";
+        }
+
+        int lineBreak = 0;
+        while (lineBreak < end && message.charAt(lineBreak) != '\n') {
+            lineBreak++;
+        }
+        if (lineBreak >= end) {
+            return new String[] { part(message, 0, end, marker) };
         }
-    };
+        return new String[] { message.subSequence(0, lineBreak).toString(),
+                part(message, lineBreak + 1, end, marker) };
+    }
+
+    private static String part(CharSequence message, int start, int end, String marker) {
+        if (marker == null) {
+            return message.subSequence(start, end).toString();
+        }
+        return new StringBuilder(end - start + marker.length()).append(message, start, end).append(marker)
+                .toString();
+    }
+
+    /**
+     * Roughly estimate the number of bytes an event adds to a message.
+     *
+     * @param parts the rendered message parts
+     * @return the estimated size
+     */
+    private static int estimateSize(String[] parts) {
+        // main message is included twice (as text/pretext and fallback)
+        int size = 2 * parts[0].length() + ATTACHMENT_OVERHEAD;
+        if (parts.length > 1) {
+            size += parts[1].length();
+        }
+        return size;
+    }
+
+    /**
+     * Get a default color based on the log level.
+     *
+     * @param level the log level
+     * @return the default color, may be <code>null</code>
+     */
+    private String getDefaultLevelColor(Level level) {
+        if (level.isGreaterOrEqual(Level.ERROR)) {
+            return "danger";
+        }
+        if (level.isGreaterOrEqual(Level.WARN)) {
+            return "warning";
+        }
+        if (level.isGreaterOrEqual(Level.INFO)) {
+            return "#439FE0";
+        }
+        return null;
+    }
+
+    private void sendMessageWithToken(SlackPayloadWriter writer, final SlackDestination destination,
+            final List<SlackEvent> events, boolean spoolOnly) throws IOException {
+        long started = System.nanoTime();
+
+        if (events.size() == 1) {
+            String[] parts = events.get(0).parts;
+            byte[] attachments = null;
+            // Send the lines below the first line as an attachment.
+            if (parts.length > 1) {
+                writer.startAttachmentList();
+                writer.writeAttachment(null, parts[1], null, null, null, shortFieldLimit, null, -1);
+                attachments = writer.endAttachmentList();
+            }
+            postTokenMessage(destination, parts[0], attachments, 1, started, spoolOnly);
+            return;
+        }
+
+        // multiple events -> one attachment per event
+        for (SlackEvent evt : events) {
+            String[] parts = evt.parts;
+
+            if (writer.getAttachmentCount() > 0 && writer.size() + estimateSize(parts) > batchMaxBytes) {
+                int count = writer.getAttachmentCount();
+                postTokenMessage(destination, count + " log messages", writer.endAttachmentList(), count, started,
+                        spoolOnly);
+                started = System.nanoTime();
+            }
+            if (writer.getAttachmentCount() == 0) {
+                writer.startAttachmentList();
+            }
+
+            if (parts.length > 1) {
+                writer.writeAttachment(parts[0], parts[1], null, null, null, shortFieldLimit, null, -1);
+            }
+            else {
+                writer.writeAttachment(null, parts[0], null, null, null, shortFieldLimit, null, -1);
+            }
+        }
+
+        if (writer.getAttachmentCount() > 0) {
+            int count = writer.getAttachmentCount();
+            postTokenMessage(destination, count + " log messages", writer.endAttachmentList(), count, started,
+                    spoolOnly);
+        }
+    }
+
+    private void postTokenMessage(SlackDestination destination, String text, byte[] attachments, int events,
+            long started, boolean spoolOnly) throws IOException {
+        // the token is only added when posting, so it is not written to the spool
+        final StringWriter requestParams = new StringWriter();
+        requestParams.append("text=").append(URLEncoder.encode(text, "UTF-8")).append('&');
+
+        if (attachments != null) {
+            String json = new String(attachments, StandardCharsets.UTF_8);
+            requestParams.append("attachments=").append(URLEncoder.encode(json, "UTF-8")).append('&');
+        }
+        requestParams.append(destination.formFields);
+
+        final byte[] bytes = requestParams.toString().getBytes("UTF-8");
+        metrics.serialization(System.nanoTime() - started);
+
+        postMessage(API_URI, destination.key, FORM_CONTENT_TYPE, bytes, events, spoolOnly);
+    }
+
+    /**
+     * Post a message. If posting fails temporarily, the message is added to
+     * the spool if configured.
+     *
+     * @param uri the URI to post to
+     * @param destination the key identifying the destination for rate limiting
+     * @param contentType the content type of the message
+     * @param bytes the message body, without the token for API messages
+     * @param events the number of events contained in the message
+     * @param spoolOnly if the message should be added to the spool without
+     *   trying to post it
+     * @throws IOException if the message could not be posted or spooled
+     */
+    private void postMessage(URI uri, String destination, String contentType, byte[] bytes, int events,
+            boolean spoolOnly) throws IOException {
+        IOException failure = null;
+        if (!spoolOnly) {
+            try {
+                sendMessage(uri, destination, contentType, bytes, true);
+                metrics.eventsSent(events);
+                return;
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+
+        SlackSpool spool = this.spool;
+        boolean temporary = !(failure instanceof SlackRejectedException)
+                || ((SlackRejectedException) failure).isTransient();
+        if (spool == null || !temporary || !spool.append(uri, destination, contentType, events, bytes)) {
+            metrics.eventsDropped(events);
+            throw failure != null ? failure : new IOException("Could not add message to Slack spool");
+        }
+        metrics.eventsSpooled(events);
+    }
+
+    /**
+     * Post messages from the spool, combining messages to the same webhook.
+     * Called periodically on the spool replay thread. Messages are not
+     * retried, posting stops at the first temporary failure.
+     */
+    private void replaySpool() {
+        SlackSpool spool = this.spool;
+        if (spool == null) {
+            return;
+        }
+
+        try {
+            for (int i = 0; i < SPOOL_REPLAY_MAX_POSTS && isStarted(); i++) {
+                List<SlackSpool.Record> records = spool.peek(SPOOL_REPLAY_MAX_MESSAGES);
+                if (records.isEmpty()) {
+                    return;
+                }
+
+                SlackSpool.Record first = records.get(0);
+                List<byte[]> bodies = new ArrayList<>();
+                bodies.add(first.body);
+                int size = first.body.length;
+                SlackSpool.Record last = first;
+                int events = first.events;
+                if ("application/json".equals(first.contentType)) {
+                    for (SlackSpool.Record record : records.subList(1, records.size())) {
+                        if (!record.uri.equals(first.uri) || !record.destination.equals(first.destination)
+                                || !record.contentType.equals(first.contentType)
+                                || size + record.body.length > batchMaxBytes
+                                || events + record.events > batchMaxEvents) {
+                            break;
+                        }
+                        bodies.add(record.body);
+                        size += record.body.length;
+                        events += record.events;
+                        last = record;
+                    }
+                }
+
+                byte[] body = first.body;
+                if (bodies.size() > 1) {
+                    SlackPayloadWriter writer = acquireWriter();
+                    try {
+                        body = writer.mergeMessages(bodies);
+                    } finally {
+                        releaseWriter(writer);
+                    }
+                }
+                try {
+                    sendMessage(first.uri, first.destination, first.contentType, body, false);
+                    metrics.eventsSent(events);
+                } catch (SlackRejectedException e) {
+                    if (e.isTransient()) {
+                        return;
+                    }
+                    // will never be accepted
+                    addError("Discarding " + bodies.size() + " messages from Slack spool", e);
+                    metrics.eventsDropped(events);
+                }
+                spool.commit(last);
+            }
+        } catch (SlackRejectedException | SlackCircuitOpenException | InterruptedIOException e) {
+            // try again later, or stopped
+        } catch (IOException e) {
+            addWarn("Could not post messages from Slack spool, will try again later", e);
+        } catch (RuntimeException e) {
+            // must not cancel the scheduled task
+            addError("Could not post messages from Slack spool, will try again later", e);
+        }
+    }
+
+    /**
+     * Post a message. In async mode the rate limit is respected, failed
+     * attempts are retried according to the retry policy and messages
+     * rejected because of rate limiting are posted again after the time
+     * requested by Slack, without using up the retry budget.
+     *
+     * @param uri the URI to post to
+     * @param destination the key identifying the destination for rate limiting
+     * @param contentType the content type of the message
+     * @param bytes the message body, without the token for API messages
+     * @param retry if failed or rate limited attempts may be repeated
+     * @throws IOException if the message could not be posted or was rejected
+     */
+    private void sendMessage(URI uri, String destination, String contentType, byte[] bytes, boolean retry)
+            throws IOException {
+        if (FORM_CONTENT_TYPE.equals(contentType)) {
+            bytes = withToken(bytes);
+        }
+        SlackRateLimiter rateLimiter = this.rateLimiter;
+        SlackConcurrencyLimiter concurrencyLimiter = this.concurrencyLimiter;
+        SlackRetryPolicy retryPolicy = this.retryPolicy;
+        if (retryPolicy != null) {
+            retryPolicy.onFirstAttempt();
+        }
+
+        int failures = 0;
+        int rateLimited = 0;
+        while (true) {
+            try {
+                if (rateLimiter != null) {
+                    rateLimiter.acquire(destination);
+                }
+
+                SlackResponse response = null;
+                IOException failure = null;
+                if (concurrencyLimiter != null) {
+                    concurrencyLimiter.acquire(destination);
+                }
+                long sent = System.nanoTime();
+                try {
+                    response = activeTransport.post(uri, contentType, bytes);
+                    long roundTrip = System.nanoTime() - sent;
+                    metrics.roundTrip(roundTrip);
+                    SlackLoadShedder loadShedder = this.loadShedder;
+                    if (loadShedder != null) {
+                        loadShedder.recordLatency(roundTrip);
+                    }
+                    if (response.isSuccess()) {
+                        return;
+                    }
+                } catch (InterruptedIOException | SlackCircuitOpenException e) {
+                    throw e;
+                } catch (IOException e) {
+                    failure = e;
+                } finally {
+                    if (concurrencyLimiter != null) {
+                        concurrencyLimiter.release(destination);
+                    }
+                }
+
+                long delay = -1;
+                if (failure != null || response.getStatusCode() >= 500) {
+                    failures++;
+                    if (retry && retryPolicy != null && retryPolicy.shouldRetry(failures)) {
+                        delay = retryPolicy.backoff(failures);
+                    }
+                }
+                else if (response.getStatusCode() == 429 && async) {
+                    long retryAfter = response.getRetryAfterMillis();
+                    if (retryAfter < 0) {
+                        retryAfter = DEFAULT_RETRY_AFTER;
+                    }
+                    if (rateLimiter != null) {
+                        // rate limiter will wait before the next attempt
+                        rateLimiter.retryAfter(destination, retryAfter);
+                    }
+                    if (retry && ++rateLimited < MAX_RATE_LIMITED_ATTEMPTS) {
+                        delay = rateLimiter != null ? 0 : retryAfter;
+                    }
+                }
+
+                if (delay < 0) {
+                    if (failure != null) {
+                        throw failure;
+                    }
+                    throw new SlackRejectedException(response);
+                }
+
+                metrics.retry();
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting to post to Slack");
+            }
+        }
+    }
+
+    /**
+     * Add the configured token to the form fields of an API message.
+     *
+     * @param body the encoded form fields without token
+     * @return the encoded form fields including the token
+     */
+    private byte[] withToken(byte[] body) {
+        byte[] prefix = ("token=" + URLEncoder.encode(String.valueOf(token), StandardCharsets.UTF_8) + "&")
+                .getBytes(StandardCharsets.UTF_8);
+        byte[] result = new byte[prefix.length + body.length];
+        System.arraycopy(prefix, 0, result, 0, prefix.length);
+        System.arraycopy(body, 0, result, prefix.length, body.length);
+        return result;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public void setToken(final String token) {
+        this.token = token;
+    }
+
+    public String getChannel() {
+        return channel;
+    }
+
+    public void setChannel(final String channel) {
+        this.channel = channel;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public String getIconEmoji() {
+        return iconEmoji;
+    }
+
+    public void setIconEmoji(String iconEmojiArg) {
+        this.iconEmoji = iconEmojiArg;
+        if (iconEmoji != null && !iconEmoji.isEmpty() && iconEmoji.startsWith(":") && !iconEmoji.endsWith(":")) {
+            iconEmoji += ":";
+        }
+    }
+
+    public Layout<ILoggingEvent> getLayout() {
+        return layout;
+    }
+
+    public void setLayout(final Layout<ILoggingEvent> layout) {
+        this.layout = layout;
+    }
+
+    /**
+     * @param route rule routing events to another channel or webhook, routes
+     *   are evaluated in the order they were added
+     */
+    public void addRoute(SlackRoute route) {
+        routes.add(route);
+    }
+
+    public String getChannelContextKey() {
+        return channelContextKey;
+    }
+
+    /**
+     * @param channelContextKey the key of a context value (see
+     *   {@link Markers#getContext(org.slf4j.Marker)}) that, if present,
+     *   specifies the channel to post an event to
+     */
+    public void setChannelContextKey(String channelContextKey) {
+        this.channelContextKey = channelContextKey;
+    }
+
+    public int getMaxEventLength() {
+        return maxEventLength;
+    }
+
+    /**
+     * @param maxEventLength the maximum number of characters of a rendered
+     *   event, i.e. of the text of its attachment, longer events are
+     *   truncated, <code>0</code> for no limit
+     */
+    public void setMaxEventLength(int maxEventLength) {
+        this.maxEventLength = maxEventLength;
+    }
+
+    public int getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(int timeout) {
+        this.timeout = timeout;
+    }
+
+    public SlackTransport getTransport() {
+        return transport;
+    }
+
+    /**
+     * @param transport the transport used to post messages, by default a
+     *   {@link HttpClientSlackTransport} using the configured timeout
+     */
+    public void setTransport(SlackTransport transport) {
+        this.transport = transport;
+    }
+
+    public String getSpoolDirectory() {
+        return spoolDirectory;
+    }
+
+    /**
+     * @param spoolDirectory the directory to store messages in that could not
+     *   be posted because Slack was unavailable, they are posted once Slack
+     *   is available again, also after a restart
+     */
+    public void setSpoolDirectory(String spoolDirectory) {
+        this.spoolDirectory = spoolDirectory;
+    }
+
+    public int getSpoolSegmentSize() {
+        return spoolSegmentSize;
+    }
+
+    /**
+     * @param spoolSegmentSize the size of a spool file in bytes, also the
+     *   maximum size of a spooled message
+     */
+    public void setSpoolSegmentSize(int spoolSegmentSize) {
+        this.spoolSegmentSize = spoolSegmentSize;
+    }
+
+    public long getSpoolMaxSize() {
+        return spoolMaxSize;
+    }
+
+    /**
+     * @param spoolMaxSize the maximum size of the spool in bytes, the oldest
+     *   messages are discarded if it is exceeded
+     */
+    public void setSpoolMaxSize(long spoolMaxSize) {
+        this.spoolMaxSize = spoolMaxSize;
+    }
+
+    public long getSpoolReplayInterval() {
+        return spoolReplayInterval;
+    }
+
+    /**
+     * @param spoolReplayInterval the interval in milliseconds in which
+     *   posting spooled messages is attempted
+     */
+    public void setSpoolReplayInterval(long spoolReplayInterval) {
+        this.spoolReplayInterval = spoolReplayInterval;
+    }
+
+    public int getCircuitBreakerThreshold() {
+        return circuitBreakerThreshold;
+    }
+
+    /**
+     * @param circuitBreakerThreshold the number of consecutive failures after
+     *   which messages are discarded until Slack is reachable again,
+     *   <code>0</code> to disable the circuit breaker
+     */
+    public void setCircuitBreakerThreshold(int circuitBreakerThreshold) {
+        this.circuitBreakerThreshold = circuitBreakerThreshold;
+    }
+
+    public long getCircuitBreakerCoolDown() {
+        return circuitBreakerCoolDown;
+    }
+
+    /**
+     * @param circuitBreakerCoolDown the time in milliseconds after which a
+     *   probe message is sent while Slack is considered unreachable
+     */
+    public void setCircuitBreakerCoolDown(long circuitBreakerCoolDown) {
+        this.circuitBreakerCoolDown = circuitBreakerCoolDown;
+    }
+
+    public String getWebhookUri() {
+        return webhookUri;
+    }
+
+    public void setWebhookUri(String webhookUri) {
+        this.webhookUri = checkWebhookUri(webhookUri);
+    }
+
+    /**
+     * Verify a webhook, it could be just an environment variable that is not
+     * replaced. Only accepted if it is a valid URI including scheme.
+     *
+     * @param webhookUri the webhook URI
+     * @return the webhook URI, <code>null</code> if it is not valid
+     */
+    static String checkWebhookUri(String webhookUri) {
+        try {
+            URI uri = URI.create(webhookUri);
+            if (uri.getScheme() != null) {
+                // valid webhook
+                return webhookUri;
+            }
+        } catch (Exception e) {
+            // ignore
+        }
+
+        return null;
+    }
+
+    public int getShortFieldLimit() {
+        return shortFieldLimit;
+    }
+
+    public void setShortFieldLimit(int shortFieldLimit) {
+        this.shortFieldLimit = shortFieldLimit;
+    }
+
+    public boolean isAsync() {
+        return async;
+    }
+
+    /**
+     * @param async if events should be delivered by dedicated sender threads
+     *   instead of the logging thread
+     */
+    public void setAsync(boolean async) {
+        this.async = async;
+    }
+
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    /**
+     * @param queueSize the maximum number of events per priority (important
+     *   events, errors and all other events) and destination waiting for
+     *   asynchronous delivery, so a destination may hold up to three times
+     *   as many events; what happens to further events is determined by the
+     *   overflow policy
+     */
+    public void setQueueSize(int queueSize) {
+        this.queueSize = queueSize;
+    }
 
-    private String webhookUri;
-    private String token;
-    private String channel;
-    private String username;
-    private String iconEmoji;
-    private Layout<ILoggingEvent> layout = defaultLayout;
+    public long getQueueMaxBytes() {
+        return queueMaxBytes;
+    }
 
-    private int timeout = 30_000;
+    /**
+     * @param queueMaxBytes the maximum estimated bytes of the events waiting
+     *   for asynchronous delivery per destination, <code>0</code> for no
+     *   limit
+     */
+    public void setQueueMaxBytes(long queueMaxBytes) {
+        this.queueMaxBytes = queueMaxBytes;
+    }
 
-    private int shortFieldLimit = 25;
+    public String getOverflowPolicy() {
+        return overflowPolicy;
+    }
 
-    @Override
-    protected void append(final ILoggingEvent evt) {
-        try {
-            if (webhookUri != null && !webhookUri.isEmpty()) {
-                sendMessageWithWebhookUri(evt);
-            } else if (token != null && !token.isEmpty()) {
-                sendMessageWithToken(evt);
-            }
-            // just ignore if there is neither token nor webhook configured
-        } catch (Exception ex) {
-            ex.printStackTrace();
-            addError("Error posting log to Slack.com (" + channel + "): " + evt, ex);
-        }
+    /**
+     * @param overflowPolicy what happens to events if the queue is full, one
+     *   of <code>drop-newest</code>, <code>drop-oldest</code>,
+     *   <code>drop-below-level</code> or <code>block</code>
+     */
+    public void setOverflowPolicy(String overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
     }
 
-    private void sendMessageWithWebhookUri(final ILoggingEvent evt) throws IOException {
-        String[] parts = layout.doLayout(evt).split("\n", 2);
+    public String getOverflowLevel() {
+        return overflowLevel;
+    }
 
-        Map<String, Object> message = new HashMap<>();
-        if (channel != null && !channel.trim().isEmpty()) {
-            message.put("channel", channel);
-        }
-        if (username != null && !username.trim().isEmpty()) {
-            message.put("username", username);
-        }
-        if (iconEmoji != null && !iconEmoji.trim().isEmpty()) {
-            boolean isUrl = false;
-            try {
-                URI uri = URI.create(iconEmoji);
-                isUrl = uri.isAbsolute() && uri.getScheme().startsWith("http");
-            } catch (Exception e) {
-                // ignore
-            }
+    /**
+     * @param overflowLevel the level below which events are dropped if the
+     *   queue is full, with the <code>drop-below-level</code> policy
+     */
+    public void setOverflowLevel(String overflowLevel) {
+        this.overflowLevel = overflowLevel;
+    }
 
-            if (isUrl) {
-                // use icon URL if a URL is provided
-                message.put("icon_url", iconEmoji);
-            }
-            else {
-                String emoji = iconEmoji;
-                /*
-                 * Ensure that the emoji is correctly identified.
-                 *
-                 * This is done to support configurations like
-                 * ${SLACK_LOG_ICON:-exclamation} in the logback config
-                 * file, because it does not seem possible to put colons
-                 * there (and I did not find a way to escape them).
-                 */
-                if (!emoji.startsWith(":")) {
-                    emoji = ":" + emoji;
-                }
-                if (!emoji.endsWith(":")) {
-                    emoji = emoji + ":";
-                }
+    public long getOverflowTimeout() {
+        return overflowTimeout;
+    }
 
-                message.put("icon_emoji", emoji);
-            }
-        }
+    /**
+     * @param overflowTimeout the maximum time in milliseconds to wait for
+     *   room in the queue, with the <code>block</code> policy
+     */
+    public void setOverflowTimeout(long overflowTimeout) {
+        this.overflowTimeout = overflowTimeout;
+    }
 
-        String mainMsg = parts[0];
-        List<Map<String, Object>> attachments = new ArrayList<>();
-        String levelColor = getDefaultLevelColor(evt.getLevel());
+    public int getSenderThreads() {
+        return senderThreads;
+    }
 
-        List<Map<String, Object>> fields = createFields(evt);
-        long timestamp = evt.getTimeStamp() / 1000;
+    public void setSenderThreads(int senderThreads) {
+        this.senderThreads = senderThreads;
+    }
 
-        // determine if event is "important"
-        boolean important = Markers.findMarker(evt.getMarker(), Markers.MARKER_NAME_IMPORTANT) != null;
-        if (important) {
-            message.put("text", "<!everyone> please have a look at this log message:");
-        }
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
 
-        String author = evt.getLoggerName();
+    /**
+     * @param virtualThreads if sender threads should be virtual threads,
+     *   requires Java 21, otherwise platform threads are used
+     */
+    public void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
 
-        Map<String, Object> attachment = new HashMap<>();
-        if (parts.length > 1 && !parts[1].trim().isEmpty()) {
-            // we have two parts -> use main part a pretext
-            attachment.put("pretext", mainMsg);
-            attachment.put("text", parts[1]);
+    public String getWaitStrategy() {
+        return waitStrategy;
+    }
 
-        }
-        else {
-            // just message -> use as attachment text
-            attachment.put("text", mainMsg);
-        }
-        attachment.put("fallback", mainMsg);
-        attachment.put("color", levelColor);
-        if (fields != null) {
-            attachment.put("fields", fields);
-        }
-        if (author != null) {
-            attachment.put("author_name", author);
-        }
-        attachment.put("ts", timestamp);
-        attachments.add(attachment);
+    /**
+     * @param waitStrategy how sender threads wait for events, one of
+     *   <code>spin</code>, <code>yield</code> or <code>park</code>
+     */
+    public void setWaitStrategy(String waitStrategy) {
+        this.waitStrategy = waitStrategy;
+    }
+
+    public int getMaxInFlightPerDestination() {
+        return maxInFlightPerDestination;
+    }
 
-        message.put("attachments", attachments);
+    /**
+     * @param maxInFlightPerDestination the maximum number of messages posted
+     *   concurrently to the same channel or webhook, in sync mode further
+     *   logging threads wait, <code>0</code> for no limit
+     */
+    public void setMaxInFlightPerDestination(int maxInFlightPerDestination) {
+        this.maxInFlightPerDestination = maxInFlightPerDestination;
+    }
 
-        ObjectMapper objectMapper = new ObjectMapper();
-        final byte[] bytes = objectMapper.writeValueAsBytes(message);
+    public long getDrainTimeout() {
+        return drainTimeout;
+    }
 
-        postMessage(webhookUri, "application/json", bytes);
+    /**
+     * @param drainTimeout the maximum time in milliseconds to spend posting
+     *   pending events when the appender is stopped in async mode, events
+     *   not posted by then are discarded
+     */
+    public void setDrainTimeout(long drainTimeout) {
+        this.drainTimeout = drainTimeout;
     }
 
-    private List<Map<String, Object>> createFields(ILoggingEvent evt) {
-        Map<String, String> contextInfo = Markers.getContext(evt.getMarker());
+    public int getMaxLanes() {
+        return maxLanes;
+    }
 
-        //TODO also include extra information that may be configured?
+    /**
+     * @param maxLanes the maximum number of destinations with their own queue
+     *   and sender threads in async mode, events for further destinations
+     *   are posted to the default destination
+     */
+    public void setMaxLanes(int maxLanes) {
+        this.maxLanes = maxLanes;
+    }
 
-        if (!contextInfo.isEmpty()) {
-            List<Map<String, Object>> fields = new ArrayList<>();
+    public int getBatchMaxEvents() {
+        return batchMaxEvents;
+    }
 
-            for (Entry<String, String> entry : contextInfo.entrySet()) {
-                Map<String, Object> field = new HashMap<>();
-                field.put("title", entry.getKey());
-                field.put("value", entry.getValue());
+    /**
+     * @param batchMaxEvents the maximum number of events combined into a
+     *   single Slack message in async mode, <code>1</code> disables batching
+     */
+    public void setBatchMaxEvents(int batchMaxEvents) {
+        this.batchMaxEvents = batchMaxEvents;
+    }
 
-                field.put("short", entry.getValue() == null
-                        || entry.getValue().length() <= shortFieldLimit);
+    public int getBatchMaxBytes() {
+        return batchMaxBytes;
+    }
 
-                fields.add(field);
-            }
+    /**
+     * @param batchMaxBytes the approximate maximum size of a Slack message
+     *   combining multiple events
+     */
+    public void setBatchMaxBytes(int batchMaxBytes) {
+        this.batchMaxBytes = batchMaxBytes;
+    }
 
-            return fields;
-        }
-        else {
-            return null;
-        }
+    public long getBatchLinger() {
+        return batchLinger;
     }
 
     /**
-     * Get a default color based on the log level.
-     *
-     * @param level the log level
-     * @return the default color, may be <code>null</code>
+     * @param batchLinger the maximum time in milliseconds to wait for further
+     *   events to fill a batch
      */
-    private String getDefaultLevelColor(Level level) {
-        if (level.isGreaterOrEqual(Level.ERROR)) {
-            return "danger";
-        }
-        if (level.isGreaterOrEqual(Level.WARN)) {
-            return "warning";
-        }
-        if (level.isGreaterOrEqual(Level.INFO)) {
-            return "#439FE0";
-        }
-        return null;
+    public void setBatchLinger(long batchLinger) {
+        this.batchLinger = batchLinger;
     }
 
-    private void sendMessageWithToken(final ILoggingEvent evt) throws IOException {
-        final StringWriter requestParams = new StringWriter();
-        requestParams.append("token=").append(token).append("&");
+    public double getRateLimit() {
+        return rateLimit;
+    }
 
-        String[] parts = layout.doLayout(evt).split("\n", 2);
-        requestParams.append("text=").append(URLEncoder.encode(parts[0], "UTF-8")).append('&');
+    /**
+     * @param rateLimit the maximum sustained number of messages per second
+     *   and destination in async mode, <code>0</code> to disable rate limiting
+     */
+    public void setRateLimit(double rateLimit) {
+        this.rateLimit = rateLimit;
+    }
 
-        // Send the lines below the first line as an attachment.
-        if (parts.length > 1) {
-            Map<String, String> attachment = new HashMap<>();
-            attachment.put("text", parts[1]);
-            List<Map<String, String>> attachments = Collections.singletonList(attachment);
-            String json = new ObjectMapper().writeValueAsString(attachments);
-            requestParams.append("attachments=").append(URLEncoder.encode(json, "UTF-8")).append('&');
-        }
-        if (channel != null) {
-            requestParams.append("channel=").append(URLEncoder.encode(channel, "UTF-8")).append('&');
-        }
-        if (username != null) {
-            requestParams.append("username=").append(URLEncoder.encode(username, "UTF-8")).append('&');
-        }
-        if (iconEmoji != null) {
-            requestParams.append("icon_emoji=").append(URLEncoder.encode(iconEmoji, "UTF-8"));
-        }
+    public int getRateLimitBurst() {
+        return rateLimitBurst;
+    }
 
-        final byte[] bytes = requestParams.toString().getBytes("UTF-8");
+    /**
+     * @param rateLimitBurst the maximum number of messages that may be sent
+     *   to a destination at once in async mode
+     */
+    public void setRateLimitBurst(int rateLimitBurst) {
+        this.rateLimitBurst = rateLimitBurst;
+    }
 
-        postMessage(API_URL, "application/x-www-form-urlencoded", bytes);
+    public int getRetryMaxAttempts() {
+        return retryMaxAttempts;
     }
 
-    private void postMessage(String uri, String contentType, byte[] bytes) throws IOException {
-        final HttpURLConnection conn = (HttpURLConnection) new URL(uri).openConnection();
-        conn.setConnectTimeout(timeout);
-        conn.setReadTimeout(timeout);
-        conn.setDoOutput(true);
-        conn.setRequestMethod("POST");
-        conn.setFixedLengthStreamingMode(bytes.length);
-        conn.setRequestProperty("Content-Type", contentType);
+    /**
+     * @param retryMaxAttempts the maximum number of attempts to post a
+     *   message in async mode, <code>1</code> disables retries
+     */
+    public void setRetryMaxAttempts(int retryMaxAttempts) {
+        this.retryMaxAttempts = retryMaxAttempts;
+    }
 
-        final OutputStream os = conn.getOutputStream();
-        os.write(bytes);
+    public long getRetryInitialBackoff() {
+        return retryInitialBackoff;
+    }
 
-        os.flush();
-        os.close();
+    /**
+     * @param retryInitialBackoff the delay before the first retry in
+     *   milliseconds, doubled for each further retry
+     */
+    public void setRetryInitialBackoff(long retryInitialBackoff) {
+        this.retryInitialBackoff = retryInitialBackoff;
     }
 
-    public String getToken() {
-        return token;
+    public long getRetryMaxBackoff() {
+        return retryMaxBackoff;
     }
 
-    public void setToken(final String token) {
-        this.token = token;
+    /**
+     * @param retryMaxBackoff the maximum delay before a retry in milliseconds
+     */
+    public void setRetryMaxBackoff(long retryMaxBackoff) {
+        this.retryMaxBackoff = retryMaxBackoff;
     }
 
-    public String getChannel() {
-        return channel;
+    public int getRetryBudget() {
+        return retryBudget;
     }
 
-    public void setChannel(final String channel) {
-        this.channel = channel;
+    /**
+     * @param retryBudget the maximum number of retries that may be spent at
+     *   once, shared by all sender threads
+     */
+    public void setRetryBudget(int retryBudget) {
+        this.retryBudget = retryBudget;
     }
 
-    public String getUsername() {
-        return username;
+    public double getRetryBudgetRatio() {
+        return retryBudgetRatio;
     }
 
-    public void setUsername(String username) {
-        this.username = username;
+    /**
+     * @param retryBudgetRatio the number of retries added to the budget for
+     *   each message posted
+     */
+    public void setRetryBudgetRatio(double retryBudgetRatio) {
+        this.retryBudgetRatio = retryBudgetRatio;
     }
 
-    public String getIconEmoji() {
-        return iconEmoji;
+    public long getDuplicateWindow() {
+        return duplicateWindow;
     }
 
-    public void setIconEmoji(String iconEmojiArg) {
-        this.iconEmoji = iconEmojiArg;
-        if (iconEmoji != null && !iconEmoji.isEmpty() && iconEmoji.startsWith(":") && !iconEmoji.endsWith(":")) {
-            iconEmoji += ":";
-        }
+    /**
+     * @param duplicateWindow the time window in milliseconds in which
+     *   repetitions of an event are suppressed and reported as a single
+     *   roll-up message, <code>0</code> to disable duplicate suppression;
+     *   events with the <code>IMPORTANT</code> marker are never suppressed
+     */
+    public void setDuplicateWindow(long duplicateWindow) {
+        this.duplicateWindow = duplicateWindow;
     }
 
-    public Layout<ILoggingEvent> getLayout() {
-        return layout;
+    public int getDuplicateCacheSize() {
+        return duplicateCacheSize;
     }
 
-    public void setLayout(final Layout<ILoggingEvent> layout) {
-        this.layout = layout;
+    /**
+     * @param duplicateCacheSize the maximum number of distinct events tracked
+     *   for duplicate suppression
+     */
+    public void setDuplicateCacheSize(int duplicateCacheSize) {
+        this.duplicateCacheSize = duplicateCacheSize;
     }
 
-    public int getTimeout() {
-        return timeout;
+    public long getDigestInterval() {
+        return digestInterval;
     }
 
-    public void setTimeout(int timeout) {
-        this.timeout = timeout;
+    /**
+     * @param digestInterval the interval in milliseconds in which a digest
+     *   of the events is posted instead of each event, <code>0</code> to
+     *   post each event
+     */
+    public void setDigestInterval(long digestInterval) {
+        this.digestInterval = digestInterval;
     }
 
-    public String getWebhookUri() {
-        return webhookUri;
+    public int getDigestTopGroups() {
+        return digestTopGroups;
     }
 
-    public void setWebhookUri(String webhookUri) {
-        // verify webhook - could be just environment variable that is not replaced
-        // only accept if it is a valid URI including scheme
-        try {
-            URI uri = URI.create(webhookUri);
-            if (uri.getScheme() != null) {
-                // valid webhook
-                this.webhookUri = webhookUri;
-                return;
-            }
-        } catch (Exception e) {
-            // ignore
-        }
+    /**
+     * @param digestTopGroups the maximum number of groups of events listed in
+     *   a digest
+     */
+    public void setDigestTopGroups(int digestTopGroups) {
+        this.digestTopGroups = digestTopGroups;
+    }
 
-        this.webhookUri = null;
+    public int getDigestMaxGroups() {
+        return digestMaxGroups;
     }
 
-    public int getShortFieldLimit() {
-        return shortFieldLimit;
+    /**
+     * @param digestMaxGroups the maximum number of groups of events tracked
+     *   per digest interval
+     */
+    public void setDigestMaxGroups(int digestMaxGroups) {
+        this.digestMaxGroups = digestMaxGroups;
     }
 
-    public void setShortFieldLimit(int shortFieldLimit) {
-        this.shortFieldLimit = shortFieldLimit;
+    public boolean isLoadShedding() {
+        return loadShedding;
+    }
+
+    /**
+     * @param loadShedding if events should be shed while Slack cannot keep
+     *   up with posting them
+     */
+    public void setLoadShedding(boolean loadShedding) {
+        this.loadShedding = loadShedding;
+    }
+
+    public double getSheddingQueueThreshold() {
+        return sheddingQueueThreshold;
+    }
+
+    /**
+     * @param sheddingQueueThreshold the fill ratio of the queue at which load
+     *   shedding starts, <code>0</code> to ignore the queue
+     */
+    public void setSheddingQueueThreshold(double sheddingQueueThreshold) {
+        this.sheddingQueueThreshold = sheddingQueueThreshold;
+    }
+
+    public long getSheddingLatencyThreshold() {
+        return sheddingLatencyThreshold;
+    }
+
+    /**
+     * @param sheddingLatencyThreshold the average latency of requests in
+     *   milliseconds at which load shedding starts, <code>0</code> to ignore
+     *   the latency
+     */
+    public void setSheddingLatencyThreshold(long sheddingLatencyThreshold) {
+        this.sheddingLatencyThreshold = sheddingLatencyThreshold;
+    }
+
+    public long getSheddingNoticeInterval() {
+        return sheddingNoticeInterval;
+    }
+
+    /**
+     * @param sheddingNoticeInterval the minimum interval in milliseconds
+     *   between notices about shed events
+     */
+    public void setSheddingNoticeInterval(long sheddingNoticeInterval) {
+        this.sheddingNoticeInterval = sheddingNoticeInterval;
+    }
+
+    public boolean isJmx() {
+        return jmx;
+    }
+
+    /**
+     * @param jmx if the appender metrics should be registered as JMX MBean
+     */
+    public void setJmx(boolean jmx) {
+        this.jmx = jmx;
+    }
+
+    /**
+     * @param listener listener to notify about metrics events
+     */
+    public void addMetricsListener(SlackMetricsListener listener) {
+        metricsListeners.add(listener);
+    }
+
+    /**
+     * @return the appender metrics, <code>null</code> if the appender was
+     *   never started
+     */
+    public SlackAppenderMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return the current load shedding level, <code>0</code> if no events
+     *   are shed
+     */
+    public int getSheddingLevel() {
+        SlackLoadShedder loadShedder = this.loadShedder;
+        return loadShedder != null ? loadShedder.getLevel() : 0;
+    }
+
+    /**
+     * @return the number of events waiting for asynchronous delivery
+     */
+    public int getQueueDepth() {
+        ConcurrentMap<SlackDestination, SlackDispatcher> lanes = this.lanes;
+        if (lanes == null) {
+            return 0;
+        }
+        int depth = 0;
+        for (SlackDispatcher lane : lanes.values()) {
+            depth += lane.getQueueDepth();
+        }
+        return depth;
     }
 
 }
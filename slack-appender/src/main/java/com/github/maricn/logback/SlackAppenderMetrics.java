@@ -0,0 +1,288 @@
+package com.github.maricn.logback;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+import ch.qos.logback.core.spi.ContextAware;
+
+/**
+ * Metrics of a {@link SlackAppender}, registered as a JMX MBean and
+ * forwarded to {@link SlackMetricsListener}s.
+ *
+ * Exceptions thrown by a listener are caught, so they neither break the
+ * logging call nor make a posted message look failed. The first exception
+ * of each listener is reported as a warning.
+ */
+public class SlackAppenderMetrics implements SlackAppenderMetricsMBean {
+
+    private static final double NANOS_PER_MILLI = 1_000_000d;
+
+    private final String appender;
+    private final IntSupplier queueDepth;
+    private final IntSupplier sheddingLevel;
+    private final ContextAware status;
+    private final List<SlackMetricsListener> listeners = new CopyOnWriteArrayList<>();
+    private final Set<SlackMetricsListener> failedListeners = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder received = new LongAdder();
+    private final LongAdder filtered = new LongAdder();
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder spooled = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder shed = new LongAdder();
+
+    private final LatencyHistogram serializationTime = new LatencyHistogram();
+    private final LatencyHistogram roundTripTime = new LatencyHistogram();
+
+    /**
+     * Create new metrics.
+     *
+     * @param appender the appender name
+     * @param queueDepth supplies the current queue depth
+     * @param sheddingLevel supplies the current load shedding level
+     * @param status used to report failing listeners
+     */
+    SlackAppenderMetrics(String appender, IntSupplier queueDepth, IntSupplier sheddingLevel, ContextAware status) {
+        this.appender = appender;
+        this.queueDepth = queueDepth;
+        this.sheddingLevel = sheddingLevel;
+        this.status = status;
+    }
+
+    void addListener(SlackMetricsListener listener) {
+        listeners.add(listener);
+    }
+
+    void eventReceived() {
+        received.increment();
+        for (SlackMetricsListener listener : listeners) {
+            try {
+                listener.onEventReceived(appender);
+            } catch (RuntimeException e) {
+                failed(listener, e);
+            }
+        }
+    }
+
+    void eventFiltered() {
+        filtered.increment();
+        for (SlackMetricsListener listener : listeners) {
+            try {
+                listener.onEventFiltered(appender);
+            } catch (RuntimeException e) {
+                failed(listener, e);
+            }
+        }
+    }
+
+    void eventQueued() {
+        queued.increment();
+        for (SlackMetricsListener listener : listeners) {
+            try {
+                listener.onEventQueued(appender);
+            } catch (RuntimeException e) {
+                failed(listener, e);
+            }
+        }
+    }
+
+    void eventsSent(int events) {
+        sent.add(events);
+        for (SlackMetricsListener listener : listeners) {
+            try {
+                listener.onEventsSent(appender, events);
+            } catch (RuntimeException e) {
+                failed(listener, e);
+            }
+        }
+    }
+
+    void retry() {
+        retries.increment();
+        for (SlackMetricsListener listener : listeners) {
+            try {
+                listener.onRetry(appender);
+            } catch (RuntimeException e) {
+                failed(listener, e);
+            }
+        }
+    }
+
+    void eventsSpooled(int events) {
+        spooled.add(events);
+        for (SlackMetricsListener listener : listeners) {
+            try {
+                listener.onEventsSpooled(appender, events);
+            } catch (RuntimeException e) {
+                failed(listener, e);
+            }
+        }
+    }
+
+    void eventsDropped(int events) {
+        dropped.add(events);
+        for (SlackMetricsListener listener : listeners) {
+            try {
+                listener.onEventsDropped(appender, events);
+            } catch (RuntimeException e) {
+                failed(listener, e);
+            }
+        }
+    }
+
+    void eventShed() {
+        shed.increment();
+        for (SlackMetricsListener listener : listeners) {
+            try {
+                listener.onEventShed(appender);
+            } catch (RuntimeException e) {
+                failed(listener, e);
+            }
+        }
+    }
+
+    void serialization(long nanos) {
+        serializationTime.record(nanos);
+        for (SlackMetricsListener listener : listeners) {
+            try {
+                listener.onSerialization(appender, nanos);
+            } catch (RuntimeException e) {
+                failed(listener, e);
+            }
+        }
+    }
+
+    void roundTrip(long nanos) {
+        roundTripTime.record(nanos);
+        for (SlackMetricsListener listener : listeners) {
+            try {
+                listener.onRoundTrip(appender, nanos);
+            } catch (RuntimeException e) {
+                failed(listener, e);
+            }
+        }
+    }
+
+    private void failed(SlackMetricsListener listener, RuntimeException e) {
+        if (failedListeners.add(listener)) {
+            status.addWarn("Slack metrics listener " + listener.getClass().getName() + " of appender " + appender
+                    + " failed, further failures are not reported", e);
+        }
+    }
+
+    @Override
+    public long getEventsReceived() {
+        return received.sum();
+    }
+
+    @Override
+    public long getEventsFiltered() {
+        return filtered.sum();
+    }
+
+    @Override
+    public long getEventsQueued() {
+        return queued.sum();
+    }
+
+    @Override
+    public long getEventsSent() {
+        return sent.sum();
+    }
+
+    @Override
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    @Override
+    public long getEventsSpooled() {
+        return spooled.sum();
+    }
+
+    @Override
+    public long getEventsDropped() {
+        return dropped.sum();
+    }
+
+    @Override
+    public long getEventsShed() {
+        return shed.sum();
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return queueDepth.getAsInt();
+    }
+
+    @Override
+    public int getSheddingLevel() {
+        return sheddingLevel.getAsInt();
+    }
+
+    @Override
+    public double getSerializationTimeMean() {
+        return serializationTime.getMean() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getSerializationTime50thPercentile() {
+        return serializationTime.getPercentile(50) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getSerializationTime99thPercentile() {
+        return serializationTime.getPercentile(99) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getSerializationTimeMax() {
+        return serializationTime.getMax() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getRoundTripTimeMean() {
+        return roundTripTime.getMean() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getRoundTripTime50thPercentile() {
+        return roundTripTime.getPercentile(50) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getRoundTripTime99thPercentile() {
+        return roundTripTime.getPercentile(99) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getRoundTripTime999thPercentile() {
+        return roundTripTime.getPercentile(99.9) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getRoundTripTimeMax() {
+        return roundTripTime.getMax() / NANOS_PER_MILLI;
+    }
+
+    /**
+     * @return the histogram of serialization times
+     */
+    public LatencyHistogram getSerializationTime() {
+        return serializationTime;
+    }
+
+    /**
+     * @return the histogram of round trip times
+     */
+    public LatencyHistogram getRoundTripTime() {
+        return roundTripTime;
+    }
+
+}
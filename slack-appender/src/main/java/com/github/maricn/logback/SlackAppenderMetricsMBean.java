@@ -0,0 +1,48 @@
+package com.github.maricn.logback;
+
+/**
+ * JMX interface of the {@link SlackAppenderMetrics}.
+ *
+ * Durations are reported in milliseconds.
+ */
+public interface SlackAppenderMetricsMBean {
+
+    long getEventsReceived();
+
+    long getEventsFiltered();
+
+    long getEventsQueued();
+
+    long getEventsSent();
+
+    long getRetries();
+
+    long getEventsSpooled();
+
+    long getEventsDropped();
+
+    long getEventsShed();
+
+    int getQueueDepth();
+
+    int getSheddingLevel();
+
+    double getSerializationTimeMean();
+
+    double getSerializationTime50thPercentile();
+
+    double getSerializationTime99thPercentile();
+
+    double getSerializationTimeMax();
+
+    double getRoundTripTimeMean();
+
+    double getRoundTripTime50thPercentile();
+
+    double getRoundTripTime99thPercentile();
+
+    double getRoundTripTime999thPercentile();
+
+    double getRoundTripTimeMax();
+
+}
@@ -0,0 +1,166 @@
+package com.github.maricn.logback;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.LongSupplier;
+
+import ch.qos.logback.core.spi.ContextAware;
+
+/**
+ * Circuit breaker wrapping a {@link SlackTransport}.
+ *
+ * After a number of consecutive failures the circuit opens and messages fail
+ * fast with a {@link SlackCircuitOpenException}, instead of tying up threads
+ * until the connection times out. Once the cool-down has passed, a single
+ * message is let through as a probe. If it succeeds the circuit closes
+ * again, otherwise it stays open for another cool-down period.
+ *
+ * Each URI has its own circuit, so a failing webhook does not keep messages
+ * from other webhooks. Channels posted to with a token share the circuit of
+ * the Slack API.
+ */
+class SlackCircuitBreaker implements SlackTransport {
+
+    private enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final SlackTransport delegate;
+    private final int failureThreshold;
+    private final long coolDownNanos;
+    private final ContextAware status;
+    private final LongSupplier nanoTime;
+
+    private final ConcurrentMap<URI, Circuit> circuits = new ConcurrentHashMap<>();
+
+    /**
+     * Create a new circuit breaker.
+     *
+     * @param delegate the transport to protect
+     * @param failureThreshold the number of consecutive failures that opens
+     *   the circuit
+     * @param coolDownMillis the time in milliseconds before a probe message
+     *   is let through
+     * @param status used to report state transitions
+     */
+    SlackCircuitBreaker(SlackTransport delegate, int failureThreshold, long coolDownMillis, ContextAware status) {
+        this(delegate, failureThreshold, coolDownMillis, status, System::nanoTime);
+    }
+
+    /**
+     * Create a new circuit breaker with a custom clock, for tests.
+     *
+     * @param delegate the transport to protect
+     * @param failureThreshold the number of consecutive failures that opens
+     *   the circuit
+     * @param coolDownMillis the time in milliseconds before a probe message
+     *   is let through
+     * @param status used to report state transitions
+     * @param nanoTime the clock, like {@link System#nanoTime()}
+     */
+    SlackCircuitBreaker(SlackTransport delegate, int failureThreshold, long coolDownMillis, ContextAware status,
+            LongSupplier nanoTime) {
+        this.delegate = delegate;
+        this.failureThreshold = failureThreshold;
+        this.coolDownNanos = coolDownMillis * 1_000_000;
+        this.status = status;
+        this.nanoTime = nanoTime;
+    }
+
+    @Override
+    public void start(int timeout) {
+        circuits.clear();
+        delegate.start(timeout);
+    }
+
+    @Override
+    public SlackResponse post(URI uri, String contentType, byte[] body) throws IOException {
+        Circuit circuit = circuits.computeIfAbsent(uri, key -> new Circuit());
+        circuit.beforePost();
+
+        boolean reachable = false;
+        String failure = "unexpected error";
+        try {
+            SlackResponse response = delegate.post(uri, contentType, body);
+            if (response.getStatusCode() >= 500) {
+                failure = "status " + response.getStatusCode();
+            }
+            else {
+                // also rejected messages prove that Slack is reachable
+                reachable = true;
+            }
+            return response;
+        } catch (IOException | RuntimeException e) {
+            failure = e.getMessage();
+            throw e;
+        } finally {
+            // recorded whatever the delegate throws, so a probe cannot leave the circuit half-open
+            if (reachable) {
+                circuit.onSuccess();
+            }
+            else {
+                circuit.onFailure(failure);
+            }
+        }
+    }
+
+    @Override
+    public void stop() {
+        delegate.stop();
+    }
+
+    /**
+     * State of the circuit of a single URI.
+     */
+    private class Circuit {
+
+        private State state = State.CLOSED;
+        private int consecutiveFailures;
+        private long openedAt;
+
+        synchronized void beforePost() throws SlackCircuitOpenException {
+            switch (state) {
+            case OPEN:
+                if (nanoTime.getAsLong() - openedAt < coolDownNanos) {
+                    throw new SlackCircuitOpenException("Slack is considered unreachable, message discarded");
+                }
+                state = State.HALF_OPEN;
+                status.addInfo("Slack circuit breaker is half-open, sending probe message");
+                break;
+            case HALF_OPEN:
+                // a probe is already in flight
+                throw new SlackCircuitOpenException("Slack is considered unreachable, message discarded");
+            default:
+                break;
+            }
+        }
+
+        synchronized void onSuccess() {
+            consecutiveFailures = 0;
+            if (state != State.CLOSED) {
+                state = State.CLOSED;
+                status.addInfo("Slack circuit breaker closed, Slack is reachable again");
+            }
+        }
+
+        synchronized void onFailure(String reason) {
+            consecutiveFailures++;
+            if (state == State.HALF_OPEN) {
+                state = State.OPEN;
+                openedAt = nanoTime.getAsLong();
+                status.addWarn("Slack circuit breaker probe failed (" + reason + "), staying open");
+            }
+            else if (state == State.CLOSED && consecutiveFailures >= failureThreshold) {
+                state = State.OPEN;
+                openedAt = nanoTime.getAsLong();
+                status.addWarn("Slack circuit breaker opened after " + consecutiveFailures
+                        + " consecutive failures (" + reason + "), discarding messages for "
+                        + (coolDownNanos / 1_000_000) + "ms");
+            }
+        }
+
+    }
+
+}
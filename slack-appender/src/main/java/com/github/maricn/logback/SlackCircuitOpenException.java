@@ -0,0 +1,16 @@
+package com.github.maricn.logback;
+
+import java.io.IOException;
+
+/**
+ * Thrown instead of posting a message while Slack is considered unreachable.
+ */
+public class SlackCircuitOpenException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public SlackCircuitOpenException(String message) {
+        super(message);
+    }
+
+}
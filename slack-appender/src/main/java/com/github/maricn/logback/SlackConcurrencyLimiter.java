@@ -0,0 +1,55 @@
+package com.github.maricn.logback;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Limits the number of messages being posted concurrently to the same
+ * destination.
+ *
+ * With many sender threads, this keeps a single slow destination from
+ * occupying all of them and avoids sending more concurrent requests than
+ * Slack will accept for a channel or webhook.
+ */
+class SlackConcurrencyLimiter {
+
+    private final int maxInFlight;
+
+    private final ConcurrentMap<String, Semaphore> permits = new ConcurrentHashMap<>();
+
+    /**
+     * Create a new concurrency limiter.
+     *
+     * @param maxInFlight the maximum number of concurrent posts per
+     *   destination
+     */
+    SlackConcurrencyLimiter(int maxInFlight) {
+        this.maxInFlight = Math.max(1, maxInFlight);
+    }
+
+    /**
+     * Wait until a message may be posted to the given destination. Must be
+     * followed by a call to {@link #release(String)}.
+     *
+     * @param destination the destination key
+     * @throws InterruptedException if the thread was interrupted while waiting
+     */
+    void acquire(String destination) throws InterruptedException {
+        semaphore(destination).acquire();
+    }
+
+    /**
+     * Signal that a message to the given destination has been posted.
+     *
+     * @param destination the destination key
+     */
+    void release(String destination) {
+        semaphore(destination).release();
+    }
+
+    private Semaphore semaphore(String destination) {
+        return permits.computeIfAbsent(destination, key -> new Semaphore(maxInFlight, true));
+    }
+
+}
@@ -0,0 +1,92 @@
+package com.github.maricn.logback;
+
+import java.net.URI;
+import java.util.Objects;
+
+/**
+ * A webhook or channel messages are posted to.
+ */
+final class SlackDestination {
+
+    /**
+     * The webhook URI, <code>null</code> if posting with a token.
+     */
+    final String webhookUri;
+
+    /**
+     * The channel, may be <code>null</code> for a webhook to post to its
+     * default channel.
+     */
+    final String channel;
+
+    /**
+     * The URI to post to, <code>null</code> if posting with a token.
+     */
+    final URI uri;
+
+    /**
+     * Key identifying the destination for rate limiting and in the spool.
+     */
+    final String key;
+
+    /**
+     * Pre-encoded start of webhook messages, <code>null</code> if posting
+     * with a token.
+     */
+    final byte[] messageStart;
+
+    /**
+     * Pre-encoded form fields of API messages, <code>null</code> if posting
+     * to a webhook.
+     */
+    final String formFields;
+
+    /**
+     * Create a new destination.
+     *
+     * @param webhookUri the webhook URI, <code>null</code> if posting with a
+     *   token
+     * @param channel the channel, may be <code>null</code>
+     * @param messageStart the encoded start of webhook messages, see
+     *   {@link SlackPayloadWriter#encodeMessageStart(java.util.Map)}
+     * @param formFields the encoded form fields of API messages other than
+     *   token, text and attachments
+     */
+    SlackDestination(String webhookUri, String channel, byte[] messageStart, String formFields) {
+        this.webhookUri = webhookUri;
+        this.channel = channel;
+        this.messageStart = messageStart;
+        this.formFields = formFields;
+        if (webhookUri != null) {
+            uri = URI.create(webhookUri);
+            key = channel != null ? webhookUri + "#" + channel : webhookUri;
+        }
+        else {
+            uri = null;
+            key = "channel:" + channel;
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        return key.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof SlackDestination)) {
+            return false;
+        }
+        SlackDestination other = (SlackDestination) obj;
+        return Objects.equals(webhookUri, other.webhookUri) && Objects.equals(channel, other.channel);
+    }
+
+    @Override
+    public String toString() {
+        return channel != null ? channel : "webhook";
+    }
+
+}
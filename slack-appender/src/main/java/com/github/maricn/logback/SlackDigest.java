@@ -0,0 +1,228 @@
+package com.github.maricn.logback;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+
+/**
+ * Aggregates events into a periodic digest instead of posting each of them.
+ *
+ * Events are counted per group of level, logger name and throwable type.
+ * When the window is closed with {@link #close(long)}, a summary event
+ * listing the groups with the most events, their first and last occurrence
+ * and a sample message is created and a new window is started. The number
+ * of groups tracked per window is limited, further events are only counted.
+ */
+class SlackDigest {
+
+    /**
+     * Maximum number of characters of a sample message.
+     */
+    private static final int MAX_SAMPLE_LENGTH = 200;
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss")
+            .withZone(ZoneId.systemDefault());
+
+    private final LoggerContext loggerContext;
+    private final String loggerName;
+    private final int topGroups;
+    private final int maxGroups;
+
+    private final Map<Key, Group> groups = new HashMap<>();
+    private long windowStart;
+    private long total;
+    private long untracked;
+    private Level maxLevel;
+
+    /**
+     * Create a new digest.
+     *
+     * @param loggerContext the logger context of summary events, may be
+     *   <code>null</code>
+     * @param loggerName the logger name of summary events
+     * @param topGroups the maximum number of groups listed in a summary
+     * @param maxGroups the maximum number of groups tracked per window
+     * @param now the current time in milliseconds
+     */
+    SlackDigest(LoggerContext loggerContext, String loggerName, int topGroups, int maxGroups, long now) {
+        this.loggerContext = loggerContext;
+        this.loggerName = loggerName;
+        this.topGroups = Math.max(1, topGroups);
+        this.maxGroups = Math.max(1, maxGroups);
+        this.windowStart = now;
+    }
+
+    /**
+     * Count an event in the current window.
+     *
+     * @param evt the event
+     */
+    void add(ILoggingEvent evt) {
+        Key key = new Key(evt);
+        long timestamp = evt.getTimeStamp();
+
+        synchronized (groups) {
+            total++;
+            if (maxLevel == null || evt.getLevel().isGreaterOrEqual(maxLevel)) {
+                maxLevel = evt.getLevel();
+            }
+
+            Group group = groups.get(key);
+            if (group == null) {
+                if (groups.size() >= maxGroups) {
+                    untracked++;
+                    return;
+                }
+                group = new Group(timestamp, sample(evt.getFormattedMessage()));
+                groups.put(key, group);
+            }
+            group.count++;
+            group.first = Math.min(group.first, timestamp);
+            group.last = Math.max(group.last, timestamp);
+        }
+    }
+
+    /**
+     * Close the current window and start a new one.
+     *
+     * @param now the current time in milliseconds
+     * @return the summary of the closed window, <code>null</code> if there
+     *   were no events
+     */
+    ILoggingEvent close(long now) {
+        List<Map.Entry<Key, Group>> top;
+        long total;
+        long untracked;
+        long start;
+        Level level;
+        synchronized (groups) {
+            if (this.total == 0) {
+                windowStart = now;
+                return null;
+            }
+            top = new ArrayList<>(groups.entrySet());
+            total = this.total;
+            untracked = this.untracked;
+            start = windowStart;
+            level = maxLevel;
+
+            groups.clear();
+            this.total = 0;
+            this.untracked = 0;
+            maxLevel = null;
+            windowStart = now;
+        }
+
+        top.sort(Collections.reverseOrder(Map.Entry.comparingByValue((a, b) -> Long.compare(a.count, b.count))));
+        long seconds = Math.max(1, (now - start + 999) / 1000);
+
+        StringBuilder message = new StringBuilder(256);
+        message.append(total).append(total == 1 ? " event" : " events").append(" in the last ").append(seconds)
+                .append("s in ").append(top.size()).append(top.size() == 1 ? " group" : " groups");
+        long others = untracked;
+        for (int i = 0; i < top.size(); i++) {
+            Key key = top.get(i).getKey();
+            Group group = top.get(i).getValue();
+            if (i >= topGroups) {
+                others += group.count;
+                continue;
+            }
+            message.append("\n*").append(group.count).append("x* ").append(key.level).append(' ')
+                    .append(key.loggerName);
+            if (key.throwableClass != null) {
+                message.append(" (").append(key.throwableClass).append(')');
+            }
+            message.append(", ").append(TIME_FORMAT.format(Instant.ofEpochMilli(group.first)));
+            if (group.last != group.first) {
+                message.append(" - ").append(TIME_FORMAT.format(Instant.ofEpochMilli(group.last)));
+            }
+            message.append(": ").append(group.sample);
+        }
+        if (others > 0) {
+            message.append("\n...and ").append(others).append(others == 1 ? " further event" : " further events");
+        }
+
+        return SlackAppender.createEvent(loggerContext, level, loggerName, now, message.toString());
+    }
+
+    private static String sample(String message) {
+        if (message == null) {
+            return "";
+        }
+        int end = message.indexOf('\n');
+        if (end < 0) {
+            end = message.length();
+        }
+        if (end > MAX_SAMPLE_LENGTH) {
+            return message.substring(0, MAX_SAMPLE_LENGTH) + "\u2026";
+        }
+        return message.substring(0, end);
+    }
+
+    private static class Group {
+
+        private final String sample;
+        private long first;
+        private long last;
+        private long count;
+
+        Group(long timestamp, String sample) {
+            this.first = timestamp;
+            this.last = timestamp;
+            this.sample = sample;
+        }
+
+    }
+
+    private static final class Key {
+
+        private final String loggerName;
+        private final Level level;
+        private final String throwableClass;
+        private final int hash;
+
+        Key(ILoggingEvent evt) {
+            this.loggerName = evt.getLoggerName();
+            this.level = evt.getLevel();
+            IThrowableProxy throwable = evt.getThrowableProxy();
+            this.throwableClass = throwable != null ? throwable.getClassName() : null;
+            int hash = Objects.hashCode(loggerName);
+            hash = 31 * hash + Objects.hashCode(level);
+            hash = 31 * hash + Objects.hashCode(throwableClass);
+            this.hash = hash;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hash == other.hash
+                    && level == other.level
+                    && Objects.equals(loggerName, other.loggerName)
+                    && Objects.equals(throwableClass, other.throwableClass);
+        }
+
+    }
+
+}
@@ -0,0 +1,363 @@
+package com.github.maricn.logback;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongFunction;
+import java.util.function.Predicate;
+
+/**
+ * Asynchronous delivery engine of the {@link SlackAppender}.
+ *
+ * Events are handed off to a bounded queue and delivered by dedicated sender
+ * threads, so a slow or unresponsive Slack endpoint does not add latency to
+ * the logging thread. Sender threads may combine multiple events into a
+ * batch, waiting a limited time for further events to arrive. On Java 21
+ * and later, sender threads may be virtual threads.
+ *
+ * Important events and errors are queued with a higher priority, see
+ * {@link SlackPriorityQueue}, and are sent without waiting for a batch to
+ * fill.
+ *
+ * When stopped, the sender threads deliver the queued events until a
+ * deadline, combining them into batches as large as possible. Multiple
+ * dispatchers drain in parallel if all of them are told to stop accepting
+ * events with {@link #close()} before waiting for any of them with
+ * {@link #drain(long)}.
+ */
+class SlackDispatcher {
+
+    private static final SlackEvent STOP = SlackPriorityQueue.STOP;
+
+    /**
+     * Minimum number of events combined into a batch while draining.
+     */
+    private static final int DRAIN_BATCH_MAX_EVENTS = 20;
+
+    /**
+     * Time to wait for sender threads to terminate after being interrupted.
+     */
+    private static final long INTERRUPT_JOIN_MILLIS = 1_000;
+
+    /**
+     * Fill ratio of the queue below which dropped events are reported.
+     */
+    private static final double DROP_REPORT_WATERMARK = 0.5;
+
+    private final String name;
+    private final SlackPriorityQueue queue;
+    private final int senderThreads;
+    private final boolean virtualThreads;
+    private final int batchMaxEvents;
+    private final long batchLingerNanos;
+    private final Predicate<List<SlackEvent>> sender;
+
+    private final List<Thread> threads = new ArrayList<>();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong reportedDropped = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong flushed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong interrupted = new AtomicLong();
+
+    private volatile boolean running;
+    private volatile boolean draining;
+    private volatile boolean deadlinePassed;
+
+    /**
+     * Create a new dispatcher.
+     *
+     * @param name the name used for the sender threads
+     * @param queue the queue holding the events
+     * @param senderThreads the number of sender threads
+     * @param virtualThreads if sender threads should be virtual threads, if
+     *   supported
+     * @param batchMaxEvents the maximum number of events per batch
+     * @param batchLingerMillis the maximum time to wait for a batch to fill
+     * @param sender delivers a batch of events and returns if it was
+     *   delivered, is expected to handle errors
+     */
+    SlackDispatcher(String name, SlackPriorityQueue queue, int senderThreads, boolean virtualThreads,
+            int batchMaxEvents, long batchLingerMillis, Predicate<List<SlackEvent>> sender) {
+        this.name = name;
+        this.queue = queue;
+        this.senderThreads = senderThreads;
+        this.virtualThreads = virtualThreads;
+        this.batchMaxEvents = batchMaxEvents;
+        this.batchLingerNanos = TimeUnit.MILLISECONDS.toNanos(batchLingerMillis);
+        this.sender = sender;
+    }
+
+    /**
+     * Start the sender threads.
+     */
+    synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        for (int i = 0; i < senderThreads; i++) {
+            Thread thread = SlackSenderThreads.newThread(name + "-sender-" + i, this::run, virtualThreads);
+            threads.add(thread);
+            thread.start();
+        }
+    }
+
+    /**
+     * Stop accepting events. The sender threads deliver the queued events as
+     * fast as possible and stop once the queue is empty.
+     */
+    synchronized void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        draining = true;
+
+        // sender threads stop once all events were taken
+        queue.stop(threads.size());
+    }
+
+    /**
+     * Stop accepting events if not done yet, wait for the queued events to
+     * be delivered and stop the sender threads. Events that were not
+     * delivered when the deadline has passed are taken from the queue and
+     * the sender threads are interrupted.
+     *
+     * @param deadlineNanos the deadline as given by {@link System#nanoTime()}
+     * @return the events that were not delivered in time, may be empty
+     */
+    synchronized List<SlackEvent> drain(long deadlineNanos) {
+        close();
+        if (threads.isEmpty()) {
+            return new ArrayList<>();
+        }
+        try {
+            for (Thread thread : threads) {
+                long remaining = deadlineNanos - System.nanoTime();
+                if (remaining <= 0) {
+                    break;
+                }
+                TimeUnit.NANOSECONDS.timedJoin(thread, remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // abandon what was not delivered in time
+        List<SlackEvent> abandoned = new ArrayList<>();
+        queue.drainTo(abandoned, Integer.MAX_VALUE);
+        // batches still being delivered fail once interrupted
+        deadlinePassed = true;
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join(INTERRUPT_JOIN_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        threads.clear();
+        return abandoned;
+    }
+
+    /**
+     * Hand off an event for asynchronous delivery. Only blocks if the queue
+     * is full and its overflow policy is {@link SlackOverflowPolicy#BLOCK}.
+     *
+     * @param evt the snapshot of the event
+     * @return the number of queued events dropped to make room for the
+     *   event, <code>-(n + 1)</code> if the event itself was dropped after
+     *   <code>n</code> queued events, see {@link SlackPriorityQueue#offer}
+     */
+    int offer(SlackEvent evt) {
+        int evicted = draining ? -1 : queue.offer(evt);
+        if (evicted != 0) {
+            // the event itself counts as well if it was dropped
+            dropped.addAndGet(Math.abs(evicted));
+        }
+        return evicted;
+    }
+
+    /**
+     * Queue a summary of the events dropped since the last summary, once the
+     * queue is below the low watermark again. The summary is only queued if
+     * there is room for it, it neither displaces queued events nor counts as
+     * dropped itself. Otherwise the drops are reported with a later summary.
+     *
+     * @param summary creates the summary for the number of dropped events
+     * @return <code>true</code> if a summary was queued
+     */
+    boolean reportDrops(LongFunction<SlackEvent> summary) {
+        long dropped = this.dropped.get();
+        long reported = reportedDropped.get();
+        if (dropped <= reported || draining || queue.getFill() >= DROP_REPORT_WATERMARK) {
+            return false;
+        }
+        if (!reportedDropped.compareAndSet(reported, dropped)) {
+            // reported by another thread
+            return false;
+        }
+        if (queue.offerIfRoom(summary.apply(dropped - reported))) {
+            return true;
+        }
+        reportedDropped.addAndGet(reported - dropped);
+        return false;
+    }
+
+    /**
+     * @return the number of events waiting for delivery
+     */
+    int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * @return the fill ratio of the queue, see
+     *   {@link SlackPriorityQueue#getFill()}
+     */
+    double getQueueFill() {
+        return queue.getFill();
+    }
+
+    /**
+     * @return the number of events dropped because the queue was full
+     */
+    long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * @return the number of events that were queued or being delivered when
+     *   draining started and were delivered before the deadline
+     */
+    long getFlushedCount() {
+        return flushed.get();
+    }
+
+    /**
+     * @return the number of events that were queued or being delivered when
+     *   draining started and could not be delivered before the deadline
+     */
+    long getFailedCount() {
+        return failed.get();
+    }
+
+    /**
+     * @return the number of events whose delivery was still in progress at
+     *   the deadline and failed because the sender thread was interrupted
+     */
+    long getInterruptedCount() {
+        return interrupted.get();
+    }
+
+    private void run() {
+        while (true) {
+            List<SlackEvent> batch = new ArrayList<>(Math.min(batchMaxEvents, 16));
+            boolean interrupted = false;
+            try {
+                batch.add(queue.take());
+                fillBatch(batch);
+            } catch (InterruptedException e) {
+                // deadline for draining has passed
+                interrupted = true;
+            }
+
+            // STOP is only taken after all events
+            boolean stop = batch.remove(STOP);
+
+            if (!batch.isEmpty()) {
+                inFlight.addAndGet(batch.size());
+                boolean delivered = false;
+                try {
+                    delivered = sender.test(batch);
+                } finally {
+                    inFlight.addAndGet(-batch.size());
+                    if (draining) {
+                        count(batch.size(), delivered);
+                    }
+                }
+            }
+            if (interrupted || stop) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Count the result of delivering a batch while draining.
+     */
+    private void count(int events, boolean delivered) {
+        if (delivered) {
+            flushed.addAndGet(events);
+        }
+        else if (deadlinePassed) {
+            interrupted.addAndGet(events);
+        }
+        else {
+            failed.addAndGet(events);
+        }
+    }
+
+    /**
+     * Add further events to a batch until it is full or the linger time
+     * has passed. Does not wait for further events once the batch contains
+     * an important event.
+     *
+     * @param batch the batch containing at least one event
+     * @throws InterruptedException if the thread was interrupted while
+     *   waiting for events
+     */
+    private void fillBatch(List<SlackEvent> batch) throws InterruptedException {
+        if (draining) {
+            // deliver the remaining events as fast as possible
+            queue.drainTo(batch, Math.max(batchMaxEvents, DRAIN_BATCH_MAX_EVENTS) - batch.size());
+            return;
+        }
+        if (batchMaxEvents <= 1) {
+            return;
+        }
+        queue.drainTo(batch, batchMaxEvents - batch.size());
+        if (containsImportant(batch, 0)) {
+            return;
+        }
+        long deadline = System.nanoTime() + batchLingerNanos;
+        while (batch.size() < batchMaxEvents) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                break;
+            }
+            SlackEvent evt = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (evt == null) {
+                break;
+            }
+            if (evt == STOP) {
+                // draining started
+                batch.add(evt);
+                break;
+            }
+            int added = batch.size();
+            batch.add(evt);
+            queue.drainTo(batch, batchMaxEvents - batch.size());
+            if (containsImportant(batch, added)) {
+                // important event that should not wait
+                break;
+            }
+        }
+    }
+
+    private static boolean containsImportant(List<SlackEvent> batch, int from) {
+        for (int i = from; i < batch.size(); i++) {
+            if (SlackPriorityQueue.priority(batch.get(i)) == SlackPriorityQueue.PRIORITY_IMPORTANT) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
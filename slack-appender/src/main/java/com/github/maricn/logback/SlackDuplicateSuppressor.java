@@ -0,0 +1,211 @@
+package com.github.maricn.logback;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import org.slf4j.Marker;
+
+/**
+ * Suppresses repeated events and replaces them by a single roll-up event.
+ *
+ * Events are identified by a fingerprint of logger name, level, message
+ * pattern and throwable type. The first event with a fingerprint is passed
+ * on, repeats within the configured window are only counted. Once the window
+ * has passed, a roll-up event stating the number of repetitions is created
+ * and can be retrieved with {@link #drainRollUps()}. The number of
+ * fingerprints tracked at once is limited.
+ */
+class SlackDuplicateSuppressor {
+
+    private final LoggerContext loggerContext;
+    private final long window;
+    private final int maxEntries;
+
+    private final LinkedHashMap<Fingerprint, Entry> entries = new LinkedHashMap<>();
+    private final List<ILoggingEvent> rollUps = new ArrayList<>();
+    private volatile boolean hasRollUps;
+
+    /**
+     * Create a new duplicate suppressor.
+     *
+     * @param loggerContext the logger context of roll-up events, may be
+     *   <code>null</code>
+     * @param window the time window in milliseconds in which repeated events
+     *   are suppressed
+     * @param maxEntries the maximum number of tracked fingerprints
+     */
+    SlackDuplicateSuppressor(LoggerContext loggerContext, long window, int maxEntries) {
+        this.loggerContext = loggerContext;
+        this.window = window;
+        this.maxEntries = Math.max(1, maxEntries);
+    }
+
+    /**
+     * Check if an event should be passed on.
+     *
+     * @param evt the event
+     * @return <code>true</code> if the event should be passed on,
+     *   <code>false</code> if it is a suppressed repetition
+     */
+    boolean accept(ILoggingEvent evt) {
+        Fingerprint fingerprint = new Fingerprint(evt);
+        long now = evt.getTimeStamp();
+
+        synchronized (entries) {
+            Entry entry = entries.get(fingerprint);
+            if (entry != null) {
+                if (now - entry.start < window) {
+                    entry.count++;
+                    entry.last = now;
+                    return false;
+                }
+                // window has passed -> start a new one
+                entries.remove(fingerprint);
+                addRollUp(fingerprint, entry);
+            }
+
+            entries.put(fingerprint, new Entry(now, evt.getFormattedMessage(), evt.getMarkerList()));
+            if (entries.size() > maxEntries) {
+                Iterator<Map.Entry<Fingerprint, Entry>> it = entries.entrySet().iterator();
+                Map.Entry<Fingerprint, Entry> eldest = it.next();
+                it.remove();
+                addRollUp(eldest.getKey(), eldest.getValue());
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Remove fingerprints whose window has passed, creating roll-up events
+     * where necessary.
+     *
+     * @param now the current time in milliseconds
+     */
+    void expire(long now) {
+        synchronized (entries) {
+            Iterator<Map.Entry<Fingerprint, Entry>> it = entries.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Fingerprint, Entry> next = it.next();
+                if (now - next.getValue().start < window) {
+                    // entries are ordered by the start of their window
+                    break;
+                }
+                it.remove();
+                addRollUp(next.getKey(), next.getValue());
+            }
+        }
+    }
+
+    /**
+     * @return the roll-up events created since the last call, may be empty
+     */
+    List<ILoggingEvent> drainRollUps() {
+        if (!hasRollUps) {
+            return Collections.emptyList();
+        }
+        synchronized (entries) {
+            List<ILoggingEvent> result = new ArrayList<>(rollUps);
+            rollUps.clear();
+            hasRollUps = false;
+            return result;
+        }
+    }
+
+    private void addRollUp(Fingerprint fingerprint, Entry entry) {
+        if (entry.count == 0) {
+            return;
+        }
+
+        long seconds = Math.max(1, (entry.last - entry.start + 999) / 1000);
+        String sample = entry.sample;
+        if (sample != null) {
+            int lineBreak = sample.indexOf('\n');
+            if (lineBreak >= 0) {
+                sample = sample.substring(0, lineBreak);
+            }
+        }
+
+        LoggingEvent rollUp = SlackAppender.createEvent(loggerContext, fingerprint.level, fingerprint.loggerName,
+                entry.last, "..." + sample + " (repeated " + entry.count + " times in the last " + seconds + "s)");
+        if (entry.markers != null) {
+            // route like the repeated events
+            for (Marker marker : entry.markers) {
+                rollUp.addMarker(marker);
+            }
+        }
+        rollUps.add(rollUp);
+        hasRollUps = true;
+    }
+
+    private static class Entry {
+
+        private final long start;
+        private final String sample;
+        private final List<Marker> markers;
+        private long last;
+        private int count;
+
+        Entry(long start, String sample, List<Marker> markers) {
+            this.start = start;
+            this.last = start;
+            this.sample = sample;
+            this.markers = markers;
+        }
+
+    }
+
+    private static final class Fingerprint {
+
+        private final String loggerName;
+        private final Level level;
+        private final String message;
+        private final String throwableClass;
+        private final int hash;
+
+        Fingerprint(ILoggingEvent evt) {
+            this.loggerName = evt.getLoggerName();
+            this.level = evt.getLevel();
+            this.message = evt.getMessage();
+            IThrowableProxy throwable = evt.getThrowableProxy();
+            this.throwableClass = throwable != null ? throwable.getClassName() : null;
+            int hash = Objects.hashCode(loggerName);
+            hash = 31 * hash + Objects.hashCode(level);
+            hash = 31 * hash + Objects.hashCode(message);
+            hash = 31 * hash + Objects.hashCode(throwableClass);
+            this.hash = hash;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Fingerprint)) {
+                return false;
+            }
+            Fingerprint other = (Fingerprint) obj;
+            return hash == other.hash
+                    && level == other.level
+                    && Objects.equals(loggerName, other.loggerName)
+                    && Objects.equals(message, other.message)
+                    && Objects.equals(throwableClass, other.throwableClass);
+        }
+
+    }
+
+}
@@ -0,0 +1,96 @@
+package com.github.maricn.logback;
+
+import java.util.Collections;
+import java.util.Map;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import to.wetf.logging.slf4j.Markers;
+
+/**
+ * Compact, immutable snapshot of an event holding only what is needed to
+ * post it to Slack.
+ *
+ * Created when an event is dispatched, so the original event with its
+ * arguments, MDC, caller data and throwable can be garbage collected while
+ * the snapshot waits for delivery. The message is rendered and truncated
+ * when the snapshot is created, which bounds its size.
+ */
+final class SlackEvent {
+
+    /**
+     * Estimated bytes of the snapshot itself, excluding its strings.
+     */
+    private static final int OVERHEAD = 96;
+
+    /**
+     * Estimated bytes of a string, excluding its characters.
+     */
+    private static final int STRING_OVERHEAD = 48;
+
+    final Level level;
+    final String loggerName;
+    final long timestamp;
+    final String[] parts;
+    final Map<String, String> context;
+    final boolean important;
+
+    /**
+     * Estimated number of bytes retained by the snapshot.
+     */
+    final int bytes;
+
+    /**
+     * Create a new snapshot.
+     *
+     * @param level the level
+     * @param loggerName the logger name
+     * @param timestamp the timestamp in milliseconds
+     * @param parts the first line of the rendered message and, if present,
+     *   the remaining lines
+     * @param context the context information
+     * @param important if the event has the important marker
+     */
+    SlackEvent(Level level, String loggerName, long timestamp, String[] parts, Map<String, String> context,
+            boolean important) {
+        this.level = level;
+        this.loggerName = loggerName;
+        this.timestamp = timestamp;
+        this.parts = parts;
+        this.context = context;
+        this.important = important;
+        this.bytes = estimateBytes(parts, context);
+    }
+
+    /**
+     * Create a snapshot of an event.
+     *
+     * @param evt the event
+     * @param parts the first line of the rendered message and, if present,
+     *   the remaining lines
+     * @return the snapshot
+     */
+    static SlackEvent of(ILoggingEvent evt, String[] parts) {
+        Map<String, String> context = Markers.getContext(evt.getMarker());
+        return new SlackEvent(evt.getLevel(), evt.getLoggerName(), evt.getTimeStamp(), parts,
+                context.isEmpty() ? Collections.emptyMap() : Collections.unmodifiableMap(context),
+                Markers.findMarker(evt.getMarker(), Markers.MARKER_NAME_IMPORTANT) != null);
+    }
+
+    private static int estimateBytes(String[] parts, Map<String, String> context) {
+        int bytes = OVERHEAD;
+        for (String part : parts) {
+            bytes += STRING_OVERHEAD + 2 * part.length();
+        }
+        for (Map.Entry<String, String> entry : context.entrySet()) {
+            bytes += 2 * STRING_OVERHEAD + 2 * (entry.getKey().length() + entry.getValue().length());
+        }
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + level + "] " + loggerName + " - " + (parts.length > 0 ? parts[0] : "");
+    }
+
+}
@@ -0,0 +1,91 @@
+package com.github.maricn.logback;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.LayoutBase;
+
+/**
+ * Default layout of the {@link SlackAppender}, rendering level, logger name
+ * and message like <code>-- [WARN]com.example.Service - message</code>,
+ * with further lines of the message indented by a tab.
+ *
+ * The appender renders events with this layout into a reused buffer, so
+ * apart from the resulting message no garbage is created per event. Only
+ * the part of the event within the maximum event length of the appender is
+ * copied into the buffer.
+ */
+public class SlackLayout extends LayoutBase<ILoggingEvent> {
+
+    @Override
+    public String doLayout(ILoggingEvent event) {
+        StringBuilder builder = new StringBuilder(128);
+        doLayout(event, builder);
+        return builder.toString();
+    }
+
+    /**
+     * Render an event.
+     *
+     * @param event the event
+     * @param builder the builder to append the rendered event to
+     */
+    public void doLayout(ILoggingEvent event, StringBuilder builder) {
+        doLayout(event, builder, 0);
+    }
+
+    /**
+     * Render an event, appending at most the given number of characters.
+     * The rest of the event is only counted, not copied.
+     *
+     * @param event the event
+     * @param builder the builder to append the rendered event to
+     * @param maxLength the maximum number of characters to append,
+     *   <code>0</code> for no limit
+     * @return the number of characters of the complete rendered event
+     */
+    public int doLayout(ILoggingEvent event, StringBuilder builder, int maxLength) {
+        int start = builder.length();
+        long limit = maxLength > 0 ? (long) start + maxLength : Long.MAX_VALUE;
+        builder.append("-- [").append(event.getLevel()).append(']')
+                .append(event.getLoggerName()).append(" - ");
+
+        String message = event.getFormattedMessage();
+        if (message == null) {
+            builder.append((String) null);
+            return truncate(builder, start, limit);
+        }
+        int length = builder.length() - start + message.length();
+        int lineStart = 0;
+        int lineBreak;
+        while ((lineBreak = message.indexOf('\n', lineStart)) >= 0) {
+            // indent further lines
+            append(builder, message, lineStart, lineBreak + 1, limit);
+            append(builder, "\t", 0, 1, limit);
+            length++;
+            lineStart = lineBreak + 1;
+        }
+        append(builder, message, lineStart, message.length(), limit);
+        truncate(builder, start, limit);
+        return length;
+    }
+
+    private static void append(StringBuilder builder, String text, int start, int end, long limit) {
+        int room = (int) Math.min(end - start, limit - builder.length());
+        if (room > 0) {
+            builder.append(text, start, start + room);
+        }
+    }
+
+    /**
+     * Cut off the part of a short rendered event exceeding the limit.
+     *
+     * @return the number of characters rendered before
+     */
+    private static int truncate(StringBuilder builder, int start, long limit) {
+        int length = builder.length() - start;
+        if (builder.length() > limit) {
+            builder.setLength((int) limit);
+        }
+        return length;
+    }
+
+}
@@ -0,0 +1,173 @@
+package com.github.maricn.logback;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+
+/**
+ * Sheds events while the appender cannot keep up with posting them.
+ *
+ * The shedding level is derived from the backlog and the observed latency
+ * of requests to Slack, relative to the configured thresholds. Each time
+ * the pressure doubles the level is raised by one, up to
+ * {@link #MAX_LEVEL}: events below INFO are shed from level 1 on, INFO
+ * events are sampled per logger at a rate of 1 in 2^level and WARN events
+ * at 1 in 2^(level-1). ERROR events and events that must not be shed are
+ * always kept. The level rises immediately but only decreases by one per
+ * update, so shedding does not flap.
+ */
+class SlackLoadShedder {
+
+    /**
+     * Highest shedding level.
+     */
+    static final int MAX_LEVEL = 4;
+
+    /**
+     * Weight of a new latency sample in the moving average.
+     */
+    private static final double LATENCY_WEIGHT = 0.2;
+
+    /**
+     * Maximum number of loggers with a sampling counter per level.
+     */
+    private static final int MAX_COUNTERS = 10_000;
+
+    private final double queueThreshold;
+    private final long latencyThresholdNanos;
+
+    // sampling counters per logger, by level so no key has to be created per event
+    private final ConcurrentMap<String, AtomicInteger> infoCounters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicInteger> warnCounters = new ConcurrentHashMap<>();
+    private final LongAdder shed = new LongAdder();
+
+    private volatile int level;
+    private volatile double latencyNanos;
+
+    /**
+     * Create a new load shedder.
+     *
+     * @param queueThreshold the fill ratio of the queue at which shedding
+     *   starts
+     * @param latencyThresholdMillis the average request latency in
+     *   milliseconds at which shedding starts
+     */
+    SlackLoadShedder(double queueThreshold, long latencyThresholdMillis) {
+        this.queueThreshold = queueThreshold;
+        this.latencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(latencyThresholdMillis);
+    }
+
+    /**
+     * Record the latency of a request to Slack.
+     *
+     * @param nanos the latency in nanoseconds
+     */
+    void recordLatency(long nanos) {
+        // races only lose a sample
+        latencyNanos += (nanos - latencyNanos) * LATENCY_WEIGHT;
+    }
+
+    /**
+     * Update the shedding level.
+     *
+     * @param queueFill the current fill ratio of the queue, between
+     *   <code>0</code> and <code>1</code>
+     * @return the new shedding level
+     */
+    int update(double queueFill) {
+        double pressure = 0;
+        if (queueThreshold > 0) {
+            pressure = queueFill / queueThreshold;
+        }
+        if (latencyThresholdNanos > 0) {
+            pressure = Math.max(pressure, latencyNanos / latencyThresholdNanos);
+        }
+
+        int target = 0;
+        if (pressure >= 1) {
+            target = Math.min(MAX_LEVEL, 1 + (int) (Math.log(pressure) / Math.log(2)));
+        }
+        int level = this.level;
+        if (target >= level) {
+            level = target;
+        }
+        else {
+            level--;
+        }
+        if (level == 0) {
+            infoCounters.clear();
+            warnCounters.clear();
+        }
+        this.level = level;
+        return level;
+    }
+
+    /**
+     * Check if an event should be shed.
+     *
+     * @param evt the event
+     * @param keep if the event must not be shed
+     * @return <code>true</code> if the event should be discarded
+     */
+    boolean shed(ILoggingEvent evt, boolean keep) {
+        int level = this.level;
+        if (level == 0 || keep || evt.getLevel().isGreaterOrEqual(Level.ERROR)) {
+            return false;
+        }
+
+        int shift;
+        ConcurrentMap<String, AtomicInteger> counters;
+        if (evt.getLevel().isGreaterOrEqual(Level.WARN)) {
+            shift = level - 1;
+            counters = warnCounters;
+        }
+        else if (evt.getLevel().isGreaterOrEqual(Level.INFO)) {
+            shift = level;
+            counters = infoCounters;
+        }
+        else {
+            shed.increment();
+            return true;
+        }
+        if (shift > 0) {
+            if (counters.size() >= MAX_COUNTERS) {
+                counters.clear();
+            }
+            AtomicInteger counter = counters.computeIfAbsent(String.valueOf(evt.getLoggerName()),
+                    key -> new AtomicInteger());
+            if ((counter.getAndIncrement() & ((1 << shift) - 1)) != 0) {
+                shed.increment();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the current shedding level, <code>0</code> if no events are
+     *   shed
+     */
+    int getLevel() {
+        return level;
+    }
+
+    /**
+     * @return the average latency of requests in milliseconds
+     */
+    double getLatencyMillis() {
+        return latencyNanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * @return the number of events shed since the last call
+     */
+    long drainShedCount() {
+        return shed.sumThenReset();
+    }
+
+}
@@ -0,0 +1,101 @@
+package com.github.maricn.logback;
+
+/**
+ * Listener notified about events in the delivery of a {@link SlackAppender}.
+ *
+ * Used to forward the appender metrics to other monitoring systems.
+ * Listeners are either added to an appender in the logback configuration or
+ * registered for all appenders as a service via
+ * <code>META-INF/services/com.github.maricn.logback.SlackMetricsListener</code>.
+ * Methods are called on the logging and sender threads and must return
+ * quickly.
+ */
+public interface SlackMetricsListener {
+
+    /**
+     * Called when the appender receives an event.
+     *
+     * @param appender the appender name
+     */
+    default void onEventReceived(String appender) {
+    }
+
+    /**
+     * Called when an event is rejected by a filter or suppressed.
+     *
+     * @param appender the appender name
+     */
+    default void onEventFiltered(String appender) {
+    }
+
+    /**
+     * Called when an event is queued for asynchronous delivery.
+     *
+     * @param appender the appender name
+     */
+    default void onEventQueued(String appender) {
+    }
+
+    /**
+     * Called when a message was posted to Slack.
+     *
+     * @param appender the appender name
+     * @param events the number of events contained in the message
+     */
+    default void onEventsSent(String appender, int events) {
+    }
+
+    /**
+     * Called when posting a message is retried.
+     *
+     * @param appender the appender name
+     */
+    default void onRetry(String appender) {
+    }
+
+    /**
+     * Called when a message could not be posted and was added to the spool.
+     *
+     * @param appender the appender name
+     * @param events the number of events contained in the message
+     */
+    default void onEventsSpooled(String appender, int events) {
+    }
+
+    /**
+     * Called when events are discarded.
+     *
+     * @param appender the appender name
+     * @param events the number of discarded events
+     */
+    default void onEventsDropped(String appender, int events) {
+    }
+
+    /**
+     * Called when an event is discarded by load shedding.
+     *
+     * @param appender the appender name
+     */
+    default void onEventShed(String appender) {
+    }
+
+    /**
+     * Called when a message was serialized.
+     *
+     * @param appender the appender name
+     * @param nanos the time spent serializing in nanoseconds
+     */
+    default void onSerialization(String appender, long nanos) {
+    }
+
+    /**
+     * Called when a response to a message was received.
+     *
+     * @param appender the appender name
+     * @param nanos the time between sending the request and receiving the
+     *   response in nanoseconds
+     */
+    default void onRoundTrip(String appender, long nanos) {
+    }
+
+}
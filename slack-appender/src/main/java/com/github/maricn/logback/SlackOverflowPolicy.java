@@ -0,0 +1,31 @@
+package com.github.maricn.logback;
+
+/**
+ * What happens to an event when the queue is full.
+ */
+enum SlackOverflowPolicy {
+
+    /**
+     * Drop the new event.
+     */
+    DROP_NEWEST,
+
+    /**
+     * Drop the oldest queued events of the same or a lower priority to make
+     * room for the new event.
+     */
+    DROP_OLDEST,
+
+    /**
+     * Drop new events below the overflow level, make room for the others
+     * like {@link #DROP_OLDEST}.
+     */
+    DROP_BELOW_LEVEL,
+
+    /**
+     * Block the logging thread until there is room, up to the overflow
+     * timeout, then drop the new event.
+     */
+    BLOCK
+
+}
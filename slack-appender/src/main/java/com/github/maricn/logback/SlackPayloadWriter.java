@@ -0,0 +1,364 @@
+package com.github.maricn.logback;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+
+/**
+ * Writes Slack message payloads directly as JSON, without building an
+ * intermediate object tree.
+ *
+ * A writer is not thread-safe. Its buffer is reused between messages, so
+ * writers are meant to be pooled by the appender rather than created per
+ * message.
+ *
+ * Parts of a message that only depend on the configuration can be encoded
+ * once with {@link #encodeMessageStart(Map)} and
+ * {@link #encodeMessageEnd(String)} and are then copied into the buffer, so
+ * only the attachments are serialized per message.
+ */
+final class SlackPayloadWriter {
+
+    /**
+     * Shared factory, thread-safe once configured.
+     */
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private static final int INITIAL_BUFFER_SIZE = 4096;
+
+    /**
+     * Buffers that grew larger than this are not kept for reuse.
+     */
+    private static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+
+    private ByteArrayBuilder buffer = new ByteArrayBuilder(INITIAL_BUFFER_SIZE);
+    private JsonGenerator generator;
+    private int attachmentCount;
+    private boolean templated;
+
+    SlackPayloadWriter() {
+    }
+
+    /**
+     * Encode the start of a message object, up to and including the start of
+     * the attachments array.
+     *
+     * @param fields the string fields of the message
+     * @return the encoded start of the message
+     */
+    static byte[] encodeMessageStart(Map<String, String> fields) {
+        ByteArrayBuilder bytes = new ByteArrayBuilder(256);
+        try {
+            JsonGenerator generator = JSON_FACTORY.createGenerator(bytes, JsonEncoding.UTF8);
+            generator.writeStartObject();
+            for (Entry<String, String> field : fields.entrySet()) {
+                generator.writeStringField(field.getKey(), field.getValue());
+            }
+            generator.writeArrayFieldStart("attachments");
+            // not closed, as that would complete the object
+            generator.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Encode the end of a message object, after the attachments.
+     *
+     * @param text the message text, may be <code>null</code>
+     * @return the encoded end of the message
+     */
+    static byte[] encodeMessageEnd(String text) {
+        ByteArrayBuilder bytes = new ByteArrayBuilder(128);
+        bytes.write(']');
+        if (text != null) {
+            try (JsonGenerator generator = JSON_FACTORY.createGenerator(bytes, JsonEncoding.UTF8)) {
+                generator.writeRaw(",\"text\":");
+                generator.writeString(text);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        bytes.write('}');
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Start writing a message from a pre-encoded start, see
+     * {@link #encodeMessageStart(Map)}. Must be completed with
+     * {@link #endMessage(byte[])}.
+     *
+     * @param start the encoded start of the message
+     * @throws IOException if writing fails
+     */
+    void startMessage(byte[] start) throws IOException {
+        start();
+        buffer.write(start);
+        templated = true;
+        // attachments are written as root values, separated explicitly
+        generator.setRootValueSeparator(null);
+    }
+
+    /**
+     * Finish a message started with {@link #startMessage(byte[])}.
+     *
+     * @param end the encoded end of the message, see
+     *   {@link #encodeMessageEnd(String)}
+     * @return the encoded message
+     * @throws IOException if writing fails
+     */
+    byte[] endMessage(byte[] end) throws IOException {
+        generator.flush();
+        buffer.write(end);
+        return finish();
+    }
+
+    /**
+     * Start writing a message object.
+     *
+     * @throws IOException if writing fails
+     */
+    void startMessage() throws IOException {
+        start();
+        generator.writeStartObject();
+    }
+
+    /**
+     * Write a string field of the message object, before the attachments are
+     * started.
+     *
+     * @param name the field name
+     * @param value the field value
+     * @throws IOException if writing fails
+     */
+    void writeField(String name, String value) throws IOException {
+        generator.writeStringField(name, value);
+    }
+
+    /**
+     * Start the attachments array of the message object.
+     *
+     * @throws IOException if writing fails
+     */
+    void startAttachments() throws IOException {
+        generator.writeArrayFieldStart("attachments");
+    }
+
+    /**
+     * Finish the message object.
+     *
+     * @param text the message text, may be <code>null</code>
+     * @return the encoded message
+     * @throws IOException if writing fails
+     */
+    byte[] endMessage(String text) throws IOException {
+        generator.writeEndArray();
+        if (text != null) {
+            generator.writeStringField("text", text);
+        }
+        generator.writeEndObject();
+        return finish();
+    }
+
+    /**
+     * Start writing a standalone attachments array.
+     *
+     * @throws IOException if writing fails
+     */
+    void startAttachmentList() throws IOException {
+        start();
+        generator.writeStartArray();
+    }
+
+    /**
+     * Finish a standalone attachments array.
+     *
+     * @return the encoded array
+     * @throws IOException if writing fails
+     */
+    byte[] endAttachmentList() throws IOException {
+        generator.writeEndArray();
+        return finish();
+    }
+
+    /**
+     * Write an attachment.
+     *
+     * @param pretext the text shown above the attachment, may be <code>null</code>
+     * @param text the attachment text
+     * @param fallback the plain text summary, may be <code>null</code>
+     * @param color the attachment color, may be <code>null</code>
+     * @param context the context information to add as fields, may be <code>null</code>
+     * @param shortFieldLimit the maximum length of a short field value
+     * @param author the author name, may be <code>null</code>
+     * @param timestamp the timestamp in seconds, negative to omit it
+     * @throws IOException if writing fails
+     */
+    void writeAttachment(String pretext, String text, String fallback, String color,
+            Map<String, String> context, int shortFieldLimit, String author, long timestamp) throws IOException {
+        if (templated && attachmentCount > 0) {
+            generator.writeRaw(',');
+        }
+        generator.writeStartObject();
+        if (pretext != null) {
+            generator.writeStringField("pretext", pretext);
+        }
+        generator.writeStringField("text", text);
+        if (fallback != null) {
+            generator.writeStringField("fallback", fallback);
+            generator.writeStringField("color", color);
+        }
+        if (context != null && !context.isEmpty()) {
+            generator.writeArrayFieldStart("fields");
+            for (Entry<String, String> entry : context.entrySet()) {
+                generator.writeStartObject();
+                generator.writeStringField("title", entry.getKey());
+                generator.writeStringField("value", entry.getValue());
+                generator.writeBooleanField("short", entry.getValue() == null
+                        || entry.getValue().length() <= shortFieldLimit);
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        }
+        if (author != null) {
+            generator.writeStringField("author_name", author);
+        }
+        if (timestamp >= 0) {
+            generator.writeNumberField("ts", timestamp);
+        }
+        generator.writeEndObject();
+        attachmentCount++;
+    }
+
+    /**
+     * Merge encoded messages into a single message containing the
+     * attachments of all of them. All other fields are taken from the first
+     * message, the text from the first message that has one.
+     *
+     * @param messages the encoded messages
+     * @return the merged message
+     * @throws IOException if a message cannot be parsed or writing fails
+     */
+    byte[] mergeMessages(List<byte[]> messages) throws IOException {
+        startMessage();
+        copyFields(messages.get(0));
+        startAttachments();
+        String text = null;
+        for (byte[] message : messages) {
+            String messageText = copyAttachments(message);
+            if (text == null) {
+                text = messageText;
+            }
+        }
+        return endMessage(text);
+    }
+
+    /**
+     * @return the number of attachments written for the current message
+     */
+    int getAttachmentCount() {
+        return attachmentCount;
+    }
+
+    /**
+     * @return the number of bytes written for the current message
+     * @throws IOException if flushing the generator fails
+     */
+    int size() throws IOException {
+        generator.flush();
+        return buffer.size();
+    }
+
+    /**
+     * Discard any message that is currently being written.
+     */
+    void reset() {
+        generator = null;
+        attachmentCount = 0;
+        templated = false;
+    }
+
+    /**
+     * Copy all fields of an encoded message except text and attachments.
+     */
+    private void copyFields(byte[] message) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(message)) {
+            expect(parser, JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                parser.nextToken();
+                if ("attachments".equals(name) || "text".equals(name)) {
+                    parser.skipChildren();
+                }
+                else {
+                    generator.writeFieldName(name);
+                    generator.copyCurrentStructure(parser);
+                }
+            }
+        }
+    }
+
+    /**
+     * Copy the attachments of an encoded message.
+     *
+     * @return the text of the message, may be <code>null</code>
+     */
+    private String copyAttachments(byte[] message) throws IOException {
+        String text = null;
+        try (JsonParser parser = JSON_FACTORY.createParser(message)) {
+            expect(parser, JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("attachments".equals(name) && value == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() != JsonToken.END_ARRAY) {
+                        generator.copyCurrentStructure(parser);
+                        attachmentCount++;
+                    }
+                }
+                else if ("text".equals(name) && value == JsonToken.VALUE_STRING) {
+                    text = parser.getText();
+                }
+                else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return text;
+    }
+
+    private static void expect(JsonParser parser, JsonToken token) throws IOException {
+        if (parser.nextToken() != token) {
+            throw new IOException("Unexpected message format, expected " + token);
+        }
+    }
+
+    private void start() throws IOException {
+        if (buffer.size() > MAX_RETAINED_BUFFER_SIZE) {
+            buffer = new ByteArrayBuilder(INITIAL_BUFFER_SIZE);
+        }
+        else {
+            buffer.reset();
+        }
+        attachmentCount = 0;
+        templated = false;
+        generator = JSON_FACTORY.createGenerator(buffer, JsonEncoding.UTF8);
+    }
+
+    private byte[] finish() throws IOException {
+        generator.close();
+        reset();
+        return buffer.toByteArray();
+    }
+
+}
@@ -0,0 +1,481 @@
+package com.github.maricn.logback;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+import ch.qos.logback.classic.Level;
+
+/**
+ * Bounded queue of events with separate priorities for important events,
+ * errors and all other events.
+ *
+ * The queue is bounded by the number of events per priority and by the
+ * estimated bytes of all queued events. The bytes are counted with a striped
+ * counter, so producers adding events at the same time may exceed the bound
+ * by their events. What happens to an event if the queue is full is
+ * determined by the {@link SlackOverflowPolicy}.
+ *
+ * Each priority has its own preallocated {@link SlackRingBuffer}, so a
+ * backlog of low priority events does not keep important events out, and
+ * adding an event takes neither a lock nor an allocation. A consumer parked
+ * while waiting for events is woken directly by the next producer. Events
+ * are taken by weighted round robin: per round up to {@link #WEIGHTS} events
+ * of each priority, starting with the highest, so lower priorities still get
+ * their share during a burst of higher priority events. Events of the same
+ * priority are taken in the order they were added.
+ *
+ * Consumers wait for events according to the {@link SlackWaitStrategy}.
+ * They are told to stop with {@link #stop(int)}; {@link #STOP} is only
+ * returned once all events were taken.
+ */
+class SlackPriorityQueue {
+
+    /**
+     * Returned to a consumer that should stop.
+     */
+    static final SlackEvent STOP = new SlackEvent(null, null, 0, new String[0], Collections.emptyMap(), false);
+
+    /**
+     * Priority of events with the important marker.
+     */
+    static final int PRIORITY_IMPORTANT = 0;
+
+    /**
+     * Priority of error events.
+     */
+    static final int PRIORITY_ERROR = 1;
+
+    /**
+     * Priority of all other events.
+     */
+    static final int PRIORITY_OTHER = 2;
+
+    /**
+     * Maximum number of events taken per priority and round.
+     */
+    private static final int[] WEIGHTS = { 8, 4, 1 };
+
+    /**
+     * Maximum number of events dropped to make room for a single event.
+     */
+    private static final int MAX_EVICTIONS = 100;
+
+    private final int capacity;
+    private final long maxBytes;
+    private final SlackRingBuffer[] rings;
+    private final SlackWaitStrategy waitStrategy;
+    private final SlackOverflowPolicy overflowPolicy;
+    private final Level overflowLevel;
+    private final long overflowTimeoutNanos;
+
+    private final LongAdder bytes = new LongAdder();
+
+    /**
+     * Remaining events per priority in the current round, only accessed
+     * while synchronized on it.
+     */
+    private final int[] credits = WEIGHTS.clone();
+
+    private final AtomicInteger stops = new AtomicInteger();
+
+    // consumers waiting with the park wait strategy
+    private final ConcurrentLinkedQueue<Thread> parked = new ConcurrentLinkedQueue<>();
+
+    // only used by the block overflow policy
+    private final AtomicInteger blocked = new AtomicInteger();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+
+    /**
+     * Create a new queue.
+     *
+     * @param capacity the maximum number of events per priority
+     * @param maxBytes the maximum estimated bytes of all queued events,
+     *   <code>0</code> for no limit
+     * @param waitStrategy how consumers wait for events
+     * @param overflowPolicy what happens to events if the queue is full
+     * @param overflowLevel the level below which events are dropped with
+     *   {@link SlackOverflowPolicy#DROP_BELOW_LEVEL}
+     * @param overflowTimeoutMillis the maximum time to wait for room with
+     *   {@link SlackOverflowPolicy#BLOCK}
+     */
+    SlackPriorityQueue(int capacity, long maxBytes, SlackWaitStrategy waitStrategy,
+            SlackOverflowPolicy overflowPolicy, Level overflowLevel, long overflowTimeoutMillis) {
+        this.capacity = capacity;
+        this.maxBytes = maxBytes;
+        this.rings = new SlackRingBuffer[WEIGHTS.length];
+        for (int i = 0; i < rings.length; i++) {
+            rings[i] = new SlackRingBuffer(capacity);
+        }
+        this.waitStrategy = waitStrategy;
+        this.overflowPolicy = overflowPolicy;
+        this.overflowLevel = overflowLevel;
+        this.overflowTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(overflowTimeoutMillis);
+    }
+
+    /**
+     * Determine the priority of an event.
+     *
+     * @param evt the event
+     * @return the priority, lower values are taken first
+     */
+    static int priority(SlackEvent evt) {
+        if (evt.important) {
+            return PRIORITY_IMPORTANT;
+        }
+        if (evt.level != null && evt.level.isGreaterOrEqual(Level.ERROR)) {
+            return PRIORITY_ERROR;
+        }
+        return PRIORITY_OTHER;
+    }
+
+    /**
+     * Add an event, applying the overflow policy if the queue is full. Only
+     * blocks with {@link SlackOverflowPolicy#BLOCK}.
+     *
+     * @param evt the event
+     * @return the number of queued events dropped to make room, or
+     *   <code>-(n + 1)</code> if the event itself was dropped after
+     *   <code>n</code> queued events
+     */
+    int offer(SlackEvent evt) {
+        if (maxBytes > 0 && evt.bytes > maxBytes) {
+            // would never fit, so do not drop queued events for it
+            return -1;
+        }
+        int priority = priority(evt);
+        int evicted = 0;
+        if (!tryOffer(evt, priority)) {
+            switch (overflowPolicy) {
+            case DROP_BELOW_LEVEL:
+                evicted = evt.level != null && evt.level.isGreaterOrEqual(overflowLevel)
+                        ? evictAndOffer(evt, priority) : -1;
+                break;
+            case DROP_OLDEST:
+                evicted = evictAndOffer(evt, priority);
+                break;
+            case BLOCK:
+                evicted = blockAndOffer(evt, priority);
+                break;
+            default:
+                evicted = -1;
+            }
+            if (evicted < 0) {
+                return evicted;
+            }
+        }
+        unparkConsumer();
+        return evicted;
+    }
+
+    /**
+     * Add an event only if there is room for it, never dropping queued
+     * events or blocking, regardless of the overflow policy.
+     *
+     * @param evt the event
+     * @return <code>true</code> if the event was added
+     */
+    boolean offerIfRoom(SlackEvent evt) {
+        if (!tryOffer(evt, priority(evt))) {
+            return false;
+        }
+        unparkConsumer();
+        return true;
+    }
+
+    private void unparkConsumer() {
+        if (!parked.isEmpty()) {
+            // one consumer is enough for a single event
+            Thread consumer = parked.poll();
+            if (consumer != null) {
+                LockSupport.unpark(consumer);
+            }
+        }
+    }
+
+    /**
+     * Add an event if there is room for it.
+     */
+    private boolean tryOffer(SlackEvent evt, int priority) {
+        if (maxBytes > 0 && bytes.sum() + evt.bytes > maxBytes) {
+            return false;
+        }
+        if (!rings[priority].offer(evt)) {
+            return false;
+        }
+        if (maxBytes > 0) {
+            bytes.add(evt.bytes);
+        }
+        return true;
+    }
+
+    /**
+     * Drop the oldest events of the same or a lower priority until there is
+     * room for an event.
+     *
+     * @return the number of dropped events, <code>-(n + 1)</code> if there
+     *   still is no room after dropping <code>n</code> events
+     */
+    private int evictAndOffer(SlackEvent evt, int priority) {
+        int evicted = 0;
+        while (evicted < MAX_EVICTIONS) {
+            SlackEvent oldest = null;
+            if (rings[priority].size() >= capacity) {
+                oldest = poll(priority);
+            }
+            for (int i = rings.length - 1; oldest == null && i >= priority; i--) {
+                oldest = poll(i);
+            }
+            if (oldest == null) {
+                break;
+            }
+            evicted++;
+            if (tryOffer(evt, priority)) {
+                return evicted;
+            }
+        }
+        return -(evicted + 1);
+    }
+
+    /**
+     * Wait for room for an event up to the overflow timeout.
+     *
+     * @return <code>0</code> if the event was added, <code>-1</code> if not
+     */
+    private int blockAndOffer(SlackEvent evt, int priority) {
+        long deadline = System.nanoTime() + overflowTimeoutNanos;
+        while (!tryOffer(evt, priority)) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0 || stops.get() > 0) {
+                return -1;
+            }
+            try {
+                lock.lockInterruptibly();
+                try {
+                    blocked.incrementAndGet();
+                    try {
+                        // check again now that consumers know there is a blocked producer
+                        if (!hasRoom(evt, priority)) {
+                            notFull.awaitNanos(remaining);
+                        }
+                    } finally {
+                        blocked.decrementAndGet();
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return -1;
+            }
+        }
+        return 0;
+    }
+
+    private boolean hasRoom(SlackEvent evt, int priority) {
+        return rings[priority].size() < capacity && (maxBytes <= 0 || bytes.sum() + evt.bytes <= maxBytes);
+    }
+
+    /**
+     * Tell consumers to stop once all events were taken.
+     *
+     * @param consumers the number of consumers
+     */
+    void stop(int consumers) {
+        stops.addAndGet(consumers);
+        for (Thread consumer : parked) {
+            LockSupport.unpark(consumer);
+        }
+        signalAll(notFull);
+    }
+
+    /**
+     * Take the next event, waiting if necessary.
+     *
+     * @return the next event or {@link #STOP}
+     * @throws InterruptedException if the thread was interrupted while
+     *   waiting
+     */
+    SlackEvent take() throws InterruptedException {
+        return next(-1);
+    }
+
+    /**
+     * Take the next event, waiting up to the given time.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit the unit of the timeout
+     * @return the next event, {@link #STOP} or <code>null</code> if the
+     *   time has passed
+     * @throws InterruptedException if the thread was interrupted while
+     *   waiting
+     */
+    SlackEvent poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return next(Math.max(0, unit.toNanos(timeout)));
+    }
+
+    /**
+     * Take the available events without waiting, never {@link #STOP}.
+     *
+     * @param events the list to add the events to
+     * @param maxEvents the maximum number of events to take
+     * @return the number of events taken
+     */
+    int drainTo(List<SlackEvent> events, int maxEvents) {
+        int count = 0;
+        SlackEvent evt;
+        while (count < maxEvents && (evt = nextEvent()) != null) {
+            events.add(evt);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * @return the fill ratio of the fullest priority, by events or bytes,
+     *   between <code>0</code> and <code>1</code>
+     */
+    double getFill() {
+        double fill = 0;
+        for (SlackRingBuffer ring : rings) {
+            fill = Math.max(fill, (double) ring.size() / capacity);
+        }
+        if (maxBytes > 0) {
+            fill = Math.max(fill, Math.min(1, (double) bytes.sum() / maxBytes));
+        }
+        return fill;
+    }
+
+    /**
+     * @return the number of events in the queue
+     */
+    int size() {
+        int size = 0;
+        for (SlackRingBuffer ring : rings) {
+            size += ring.size();
+        }
+        return size;
+    }
+
+    /**
+     * Take the next event or stop signal, waiting according to the wait
+     * strategy.
+     *
+     * @param nanos the maximum time to wait, negative to wait indefinitely
+     */
+    private SlackEvent next(long nanos) throws InterruptedException {
+        long deadline = System.nanoTime() + nanos;
+        while (true) {
+            SlackEvent evt = nextEvent();
+            if (evt != null) {
+                return evt;
+            }
+            if (size() == 0) {
+                int stops;
+                while ((stops = this.stops.get()) > 0) {
+                    if (this.stops.compareAndSet(stops, stops - 1)) {
+                        return STOP;
+                    }
+                }
+            }
+
+            long remaining = nanos < 0 ? Long.MAX_VALUE : deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return null;
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            switch (waitStrategy) {
+            case SPIN:
+                Thread.onSpinWait();
+                break;
+            case YIELD:
+                Thread.yield();
+                break;
+            default:
+                park(nanos < 0 ? -1 : remaining);
+            }
+        }
+    }
+
+    /**
+     * Take the next event by weighted round robin.
+     *
+     * @return the event, <code>null</code> if there is none
+     */
+    private SlackEvent nextEvent() {
+        synchronized (credits) {
+            for (int round = 0; round < 2; round++) {
+                for (int i = 0; i < rings.length; i++) {
+                    if (credits[i] > 0) {
+                        SlackEvent evt = poll(i);
+                        if (evt != null) {
+                            credits[i]--;
+                            return evt;
+                        }
+                    }
+                }
+                // round is over, or no events with credits left
+                System.arraycopy(WEIGHTS, 0, credits, 0, credits.length);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Take the next event of a priority, making room for blocked producers.
+     */
+    private SlackEvent poll(int priority) {
+        SlackEvent evt = rings[priority].poll();
+        if (evt != null) {
+            if (maxBytes > 0) {
+                bytes.add(-evt.bytes);
+            }
+            if (blocked.get() > 0) {
+                signalAll(notFull);
+            }
+        }
+        return evt;
+    }
+
+    /**
+     * Wait until woken by a producer, or interrupted.
+     *
+     * @param nanos the maximum time to wait, negative to wait until woken
+     */
+    private void park(long nanos) {
+        Thread consumer = Thread.currentThread();
+        parked.add(consumer);
+        try {
+            // check again now that producers can see the parked consumer
+            if (size() == 0 && stops.get() == 0) {
+                if (nanos < 0) {
+                    LockSupport.park(this);
+                }
+                else {
+                    LockSupport.parkNanos(this, nanos);
+                }
+            }
+        } finally {
+            parked.remove(consumer);
+        }
+    }
+
+    private void signalAll(Condition condition) {
+        lock.lock();
+        try {
+            condition.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+}
@@ -0,0 +1,125 @@
+package com.github.maricn.logback;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket rate limiter with a separate bucket per destination.
+ *
+ * Slack allows about one message per second per channel or webhook, with
+ * short bursts. If Slack nevertheless responds with HTTP 429, the
+ * <code>Retry-After</code> time is honored for the affected destination.
+ */
+class SlackRateLimiter {
+
+    private final double permitsPerNano;
+    private final int burst;
+    private final LongSupplier nanoTime;
+
+    private final ConcurrentMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    /**
+     * Create a new rate limiter.
+     *
+     * @param permitsPerSecond the sustained rate of messages per second
+     * @param burst the maximum number of messages that may be sent at once
+     */
+    SlackRateLimiter(double permitsPerSecond, int burst) {
+        this(permitsPerSecond, burst, System::nanoTime);
+    }
+
+    /**
+     * Create a new rate limiter with a custom clock, for tests.
+     *
+     * @param permitsPerSecond the sustained rate of messages per second
+     * @param burst the maximum number of messages that may be sent at once
+     * @param nanoTime the clock, like {@link System#nanoTime()}
+     */
+    SlackRateLimiter(double permitsPerSecond, int burst, LongSupplier nanoTime) {
+        this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burst = Math.max(1, burst);
+        this.nanoTime = nanoTime;
+    }
+
+    /**
+     * Wait until a message may be sent to the given destination.
+     *
+     * @param destination the destination key
+     * @throws InterruptedException if the thread was interrupted while waiting
+     */
+    void acquire(String destination) throws InterruptedException {
+        long wait;
+        while ((wait = tryAcquire(destination)) > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+    /**
+     * Try to take a permit for the given destination without waiting.
+     *
+     * @param destination the destination key
+     * @return <code>0</code> if a message may be sent now, otherwise the time
+     *   to wait in nanoseconds before trying again
+     */
+    long tryAcquire(String destination) {
+        return bucket(destination).reserve(nanoTime.getAsLong());
+    }
+
+    /**
+     * Block a destination after Slack rejected a message because of rate
+     * limiting.
+     *
+     * @param destination the destination key
+     * @param retryAfterMillis the time to wait as requested by Slack in
+     *   milliseconds
+     */
+    void retryAfter(String destination, long retryAfterMillis) {
+        bucket(destination).block(nanoTime.getAsLong() + TimeUnit.MILLISECONDS.toNanos(retryAfterMillis));
+    }
+
+    private Bucket bucket(String destination) {
+        return buckets.computeIfAbsent(destination, key -> new Bucket());
+    }
+
+    private class Bucket {
+
+        private double tokens = burst;
+        private long lastRefill = nanoTime.getAsLong();
+        private long blockedUntil = lastRefill;
+
+        /**
+         * Try to take a token.
+         *
+         * @param now the current time in nanoseconds
+         * @return <code>0</code> if a token was taken, otherwise the time to
+         *   wait in nanoseconds before trying again
+         */
+        synchronized long reserve(long now) {
+            if (now - blockedUntil < 0) {
+                return blockedUntil - now;
+            }
+
+            tokens = Math.min(burst, tokens + (now - lastRefill) * permitsPerNano);
+            lastRefill = now;
+
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return Math.max(1, (long) Math.ceil((1 - tokens) / permitsPerNano));
+        }
+
+        synchronized void block(long until) {
+            if (until - blockedUntil > 0) {
+                blockedUntil = until;
+                // no bursts directly after being rate limited
+                tokens = 1;
+                lastRefill = until;
+            }
+        }
+
+    }
+
+}
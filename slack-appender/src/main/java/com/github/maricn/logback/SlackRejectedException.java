@@ -0,0 +1,30 @@
+package com.github.maricn.logback;
+
+import java.io.IOException;
+
+/**
+ * Thrown if Slack responded to a message with an error.
+ */
+public class SlackRejectedException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient SlackResponse response;
+
+    public SlackRejectedException(SlackResponse response) {
+        super("Slack rejected message with status " + response);
+        this.response = response;
+    }
+
+    public SlackResponse getResponse() {
+        return response;
+    }
+
+    /**
+     * @return if the message may be accepted if posted again later
+     */
+    public boolean isTransient() {
+        return response.getStatusCode() == 429 || response.getStatusCode() >= 500;
+    }
+
+}
@@ -0,0 +1,77 @@
+package com.github.maricn.logback;
+
+/**
+ * Response to a message posted to Slack.
+ */
+public class SlackResponse {
+
+    private final int statusCode;
+    private final String body;
+    private final long retryAfterMillis;
+
+    /**
+     * Create a new response.
+     *
+     * @param statusCode the HTTP status code
+     * @param body the response body, may be <code>null</code>
+     * @param retryAfterMillis the time to wait before posting again as
+     *   requested by Slack in milliseconds, <code>-1</code> if not specified
+     */
+    public SlackResponse(int statusCode, String body, long retryAfterMillis) {
+        this.statusCode = statusCode;
+        this.body = body;
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    /**
+     * @return the time to wait before posting again as requested by Slack
+     *   in milliseconds, <code>-1</code> if not specified
+     */
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+
+    /**
+     * @return if the message was accepted by Slack
+     */
+    public boolean isSuccess() {
+        if (statusCode < 200 || statusCode >= 300) {
+            return false;
+        }
+        // the Web API responds with status 200 also for errors
+        return body == null || !body.contains("\"ok\":false");
+    }
+
+    /**
+     * Parse the value of a <code>Retry-After</code> header.
+     *
+     * @param value the header value, may be <code>null</code>
+     * @return the time to wait in milliseconds, <code>-1</code> if the value
+     *   is missing or not a number of seconds
+     */
+    public static long parseRetryAfter(String value) {
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Math.max(0, Long.parseLong(value.trim())) * 1000;
+        } catch (NumberFormatException e) {
+            // HTTP dates are not used by Slack
+            return -1;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return statusCode + (body != null && !body.isEmpty() ? " " + body : "");
+    }
+
+}
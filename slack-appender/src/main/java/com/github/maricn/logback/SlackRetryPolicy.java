@@ -0,0 +1,85 @@
+package com.github.maricn.logback;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Retry policy for messages that could not be posted to Slack.
+ *
+ * Retries are delayed using exponential backoff with jitter. A retry budget
+ * shared by all sender threads limits the retries to a fraction of the
+ * messages posted, so that an outage does not multiply the load on Slack.
+ */
+class SlackRetryPolicy {
+
+    private final int maxAttempts;
+    private final long initialBackoff;
+    private final long maxBackoff;
+    private final int budget;
+    private final double budgetRatio;
+
+    private double tokens;
+
+    /**
+     * Create a new retry policy.
+     *
+     * @param maxAttempts the maximum number of attempts per message
+     * @param initialBackoff the delay before the first retry in milliseconds
+     * @param maxBackoff the maximum delay before a retry in milliseconds
+     * @param budget the maximum number of retries that may be spent at once
+     * @param budgetRatio the number of retries earned per message posted
+     */
+    SlackRetryPolicy(int maxAttempts, long initialBackoff, long maxBackoff, int budget, double budgetRatio) {
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = Math.max(1, initialBackoff);
+        this.maxBackoff = Math.max(this.initialBackoff, maxBackoff);
+        this.budget = budget;
+        this.budgetRatio = budgetRatio;
+        this.tokens = budget;
+    }
+
+    /**
+     * Called when a message is posted for the first time.
+     */
+    synchronized void onFirstAttempt() {
+        tokens = Math.min(budget, tokens + budgetRatio);
+    }
+
+    /**
+     * Determine if a failed attempt should be retried. If so, the retry is
+     * taken from the retry budget.
+     *
+     * @param attempt the number of the failed attempt, starting with
+     *   <code>1</code>
+     * @return if the message should be posted again
+     */
+    boolean shouldRetry(int attempt) {
+        if (attempt >= maxAttempts) {
+            return false;
+        }
+        synchronized (this) {
+            if (tokens >= 1) {
+                tokens -= 1;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Get the delay before the next attempt.
+     *
+     * @param attempt the number of the failed attempt, starting with
+     *   <code>1</code>
+     * @return the delay in milliseconds
+     */
+    long backoff(int attempt) {
+        long max = initialBackoff << Math.min(attempt - 1, 30);
+        if (max <= 0 || max > maxBackoff) {
+            max = maxBackoff;
+        }
+        // equal jitter: at least half of the exponential delay
+        long half = max / 2;
+        return half + ThreadLocalRandom.current().nextLong(max - half + 1);
+    }
+
+}
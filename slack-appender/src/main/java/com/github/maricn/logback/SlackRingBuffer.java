@@ -0,0 +1,127 @@
+package com.github.maricn.logback;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free ring buffer of events.
+ *
+ * Slots are preallocated, each with a sequence number telling producers and
+ * consumers whether it is free or holds an event for the current lap. A
+ * producer claims a slot with a single CAS and publishes the event by
+ * updating the sequence number, so adding an event does not allocate or
+ * take a lock. Safe for multiple producers and multiple consumers, see
+ * Dmitry Vyukov's bounded MPMC queue.
+ *
+ * The sequence numbers need at least two slots to tell a free slot from one
+ * holding an event of the previous lap, so a buffer for a single event has
+ * two slots and is bounded by its capacity instead.
+ */
+final class SlackRingBuffer {
+
+    private final int capacity;
+    private final int slots;
+    private final SlackEvent[] events;
+    private final AtomicLongArray sequences;
+
+    /**
+     * Position of the next event to be added.
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * Position of the next event to be taken.
+     */
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * Create a new ring buffer.
+     *
+     * @param capacity the maximum number of events
+     */
+    SlackRingBuffer(int capacity) {
+        this.capacity = capacity;
+        this.slots = Math.max(2, capacity);
+        this.events = new SlackEvent[slots];
+        this.sequences = new AtomicLongArray(slots);
+        for (int i = 0; i < slots; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Add an event if there is capacity left.
+     *
+     * @param evt the event
+     * @return <code>true</code> if the event was added, <code>false</code> if
+     *   the buffer is full
+     */
+    boolean offer(SlackEvent evt) {
+        long pos = tail.get();
+        while (true) {
+            int index = (int) (pos % slots);
+            long diff = sequences.get(index) - pos;
+            if (diff == 0) {
+                if (slots > capacity && pos - head.get() >= capacity) {
+                    return false;
+                }
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    events[index] = evt;
+                    // publish
+                    sequences.set(index, pos + 1);
+                    return true;
+                }
+                pos = tail.get();
+            }
+            else if (diff < 0) {
+                // slot of the previous lap not taken yet
+                return false;
+            }
+            else {
+                // claimed by another producer
+                pos = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Take the next event.
+     *
+     * @return the event, <code>null</code> if the buffer is empty or the
+     *   next event is not published yet
+     */
+    SlackEvent poll() {
+        long pos = head.get();
+        while (true) {
+            int index = (int) (pos % slots);
+            long diff = sequences.get(index) - (pos + 1);
+            if (diff == 0) {
+                if (head.compareAndSet(pos, pos + 1)) {
+                    SlackEvent evt = events[index];
+                    events[index] = null;
+                    // free the slot for the next lap
+                    sequences.set(index, pos + slots);
+                    return evt;
+                }
+                pos = head.get();
+            }
+            else if (diff < 0) {
+                return null;
+            }
+            else {
+                // taken by another consumer
+                pos = head.get();
+            }
+        }
+    }
+
+    /**
+     * @return the number of events added and not taken yet, including events
+     *   that are about to be published
+     */
+    int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(capacity, size));
+    }
+
+}
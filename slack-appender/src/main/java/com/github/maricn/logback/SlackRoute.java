@@ -0,0 +1,151 @@
+package com.github.maricn.logback;
+
+import java.util.Map;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import to.wetf.logging.slf4j.Markers;
+
+/**
+ * Rule routing events to a channel or webhook other than the default one
+ * of the {@link SlackAppender}.
+ *
+ * An event matches if it satisfies all configured conditions: a minimum
+ * level, a logger name prefix, a marker contained in the event markers and
+ * a context key (optionally with a specific value) in the event context.
+ * A route without conditions matches all events.
+ */
+public class SlackRoute {
+
+    private String channel;
+    private String webhookUri;
+
+    private String levelName;
+    private Level level;
+    private String loggerPrefix;
+    private String marker;
+    private String contextKey;
+    private String contextValue;
+
+    /**
+     * The destination of the route, resolved when the appender is started.
+     */
+    SlackDestination destination;
+
+    /**
+     * @return if the configured level is not a valid level
+     */
+    boolean hasInvalidLevel() {
+        return levelName != null && level == null;
+    }
+
+    /**
+     * Determine if an event matches the route.
+     *
+     * @param evt the event
+     * @param context the context of the event, may be <code>null</code> if
+     *   the route has no context key
+     * @return if the event matches
+     */
+    boolean matches(ILoggingEvent evt, Map<String, String> context) {
+        if (level != null && !evt.getLevel().isGreaterOrEqual(level)) {
+            return false;
+        }
+        if (loggerPrefix != null && (evt.getLoggerName() == null || !evt.getLoggerName().startsWith(loggerPrefix))) {
+            return false;
+        }
+        if (marker != null && Markers.findMarker(evt.getMarker(), marker) == null) {
+            return false;
+        }
+        if (contextKey != null) {
+            String value = context.get(contextKey);
+            if (value == null || (contextValue != null && !contextValue.equals(value))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public String getChannel() {
+        return channel;
+    }
+
+    /**
+     * @param channel the channel to post matching events to, defaults to the
+     *   channel of the appender
+     */
+    public void setChannel(String channel) {
+        this.channel = channel;
+    }
+
+    public String getWebhookUri() {
+        return webhookUri;
+    }
+
+    /**
+     * @param webhookUri the webhook to post matching events to, defaults to
+     *   the webhook of the appender, also if it is not a valid URI
+     */
+    public void setWebhookUri(String webhookUri) {
+        this.webhookUri = SlackAppender.checkWebhookUri(webhookUri);
+    }
+
+    public String getLevel() {
+        return level != null ? level.toString() : levelName;
+    }
+
+    /**
+     * @param level the minimum level of matching events
+     */
+    public void setLevel(String level) {
+        this.levelName = level != null && !level.trim().isEmpty() ? level.trim() : null;
+        this.level = levelName != null ? Level.toLevel(levelName, null) : null;
+    }
+
+    public String getLoggerPrefix() {
+        return loggerPrefix;
+    }
+
+    /**
+     * @param loggerPrefix the prefix of the logger name of matching events
+     */
+    public void setLoggerPrefix(String loggerPrefix) {
+        this.loggerPrefix = loggerPrefix;
+    }
+
+    public String getMarker() {
+        return marker;
+    }
+
+    /**
+     * @param marker the name of a marker matching events must have
+     */
+    public void setMarker(String marker) {
+        this.marker = marker;
+    }
+
+    public String getContextKey() {
+        return contextKey;
+    }
+
+    /**
+     * @param contextKey a key matching events must have in their context
+     *   (see {@link Markers#getContext(org.slf4j.Marker)})
+     */
+    public void setContextKey(String contextKey) {
+        this.contextKey = contextKey;
+    }
+
+    public String getContextValue() {
+        return contextValue;
+    }
+
+    /**
+     * @param contextValue the value the context key must have, any value if
+     *   not set
+     */
+    public void setContextValue(String contextValue) {
+        this.contextValue = contextValue;
+    }
+
+}
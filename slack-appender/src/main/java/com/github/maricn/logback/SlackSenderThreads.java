@@ -0,0 +1,37 @@
+package com.github.maricn.logback;
+
+/**
+ * Creates the sender threads of the {@link SlackDispatcher}.
+ *
+ * This implementation is used on Java 17 to 20 and only supports platform
+ * threads. The multi-release JAR contains a variant for Java 21 and later
+ * that supports virtual threads.
+ */
+final class SlackSenderThreads {
+
+    private SlackSenderThreads() {
+    }
+
+    /**
+     * @return if virtual threads are supported by the running JVM
+     */
+    static boolean isVirtualSupported() {
+        return false;
+    }
+
+    /**
+     * Create a sender thread, which is not started yet.
+     *
+     * @param name the thread name
+     * @param task the task run by the thread
+     * @param virtual if a virtual thread should be created, ignored if not
+     *   supported
+     * @return the thread
+     */
+    static Thread newThread(String name, Runnable task, boolean virtual) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+}
@@ -0,0 +1,411 @@
+package com.github.maricn.logback;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+import ch.qos.logback.core.spi.ContextAware;
+
+/**
+ * Persistent spool for messages that could not be posted to Slack.
+ *
+ * Messages are appended to memory-mapped segment files of a fixed size. The
+ * position up to which messages have been delivered is stored in a separate
+ * offset file. Both are written through the memory mapping and left to the
+ * operating system to persist, so appending never waits for the disk. Each
+ * record carries a checksum, so records that were only partially written
+ * before a crash are detected and ignored.
+ *
+ * If the spool exceeds its maximum size, the oldest segment is discarded.
+ * Messages are delivered at least once, a crash between posting a message
+ * and storing the offset leads to the message being posted again.
+ *
+ * Records include the URI a message is posted to, for a webhook that is a
+ * credential. Where the file system supports it, the directory and files are
+ * therefore created accessible by the owner only.
+ */
+class SlackSpool {
+
+    /**
+     * A message read from the spool.
+     */
+    static class Record {
+
+        private final long segment;
+        private final int end;
+
+        final URI uri;
+        final String destination;
+        final String contentType;
+        final int events;
+        final byte[] body;
+
+        private Record(long segment, int end, URI uri, String destination, String contentType, int events,
+                byte[] body) {
+            this.segment = segment;
+            this.end = end;
+            this.uri = uri;
+            this.destination = destination;
+            this.contentType = contentType;
+            this.events = events;
+            this.body = body;
+        }
+
+    }
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".spool";
+    private static final String OFFSET_FILE = "offset";
+
+    /**
+     * Record header: content length and checksum.
+     */
+    private static final int HEADER_SIZE = 8;
+
+    /**
+     * Maximum length in bytes of the URI, destination and content type.
+     */
+    private static final int MAX_STRING_LENGTH = 0xFFFF;
+
+    private static final String OWNER_ONLY_DIRECTORY = "rwx------";
+    private static final String OWNER_ONLY_FILE = "rw-------";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final long maxSize;
+    private final ContextAware status;
+
+    private final TreeMap<Long, MappedByteBuffer> segments = new TreeMap<>();
+    private MappedByteBuffer offset;
+
+    private long writeSegment;
+    private int writePosition;
+
+    private long readSegment;
+    private int readPosition;
+
+    /**
+     * Create a new spool.
+     *
+     * @param directory the directory to store the spool files in
+     * @param segmentSize the size of a segment file in bytes
+     * @param maxSize the maximum size of all segment files in bytes
+     * @param status used to report discarded messages
+     */
+    SlackSpool(Path directory, int segmentSize, long maxSize, ContextAware status) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSize = Math.max(segmentSize, maxSize);
+        this.status = status;
+    }
+
+    /**
+     * Open the spool, recovering existing segments and the delivery offset.
+     *
+     * @throws IOException if the spool files cannot be accessed
+     */
+    synchronized void open() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            Files.createDirectories(directory, ownerOnly(OWNER_ONLY_DIRECTORY));
+        }
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+                SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    long index = Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                            name.length() - SEGMENT_SUFFIX.length()));
+                    segments.put(index, map(file, Files.size(file)));
+                } catch (NumberFormatException e) {
+                    // not a segment
+                }
+            }
+        }
+
+        if (segments.isEmpty()) {
+            writeSegment = 0;
+            segments.put(writeSegment, map(segmentFile(writeSegment), segmentSize));
+            writePosition = 0;
+        }
+        else {
+            // find the end of the data written to the last segment
+            writeSegment = segments.lastKey();
+            writePosition = 0;
+            Record record;
+            while ((record = read(writeSegment, writePosition)) != null) {
+                writePosition = record.end;
+            }
+        }
+
+        offset = map(directory.resolve(OFFSET_FILE), 16);
+        readSegment = segments.firstKey();
+        readPosition = 0;
+        long storedSegment = offset.getLong(0);
+        int storedPosition = offset.getInt(8);
+        if (offset.getInt(12) == offsetChecksum(storedSegment, storedPosition)
+                && segments.containsKey(storedSegment)) {
+            readSegment = storedSegment;
+            readPosition = storedPosition;
+        }
+    }
+
+    /**
+     * Append a message to the spool.
+     *
+     * @param uri the URI to post the message to
+     * @param destination the key identifying the destination for rate limiting
+     * @param contentType the content type of the message
+     * @param events the number of events contained in the message
+     * @param body the message body
+     * @return <code>false</code> if the message is too large for the spool,
+     *   or its URI or destination are too long
+     * @throws IOException if a new segment cannot be created
+     */
+    synchronized boolean append(URI uri, String destination, String contentType, int events, byte[] body)
+            throws IOException {
+        if (offset == null) {
+            throw new IOException("Slack spool is closed");
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(body.length + 256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        if (!writeString(out, uri.toString()) || !writeString(out, destination)
+                || !writeString(out, contentType)) {
+            return false;
+        }
+        out.writeInt(events);
+        out.write(body);
+        out.flush();
+        byte[] content = bytes.toByteArray();
+
+        int recordSize = HEADER_SIZE + content.length;
+        if (recordSize > segmentSize) {
+            return false;
+        }
+
+        MappedByteBuffer buffer = segments.get(writeSegment);
+        if (writePosition + recordSize > buffer.capacity()) {
+            buffer = rotate();
+        }
+
+        // write content first and length last, so incomplete records are not read
+        buffer.put(writePosition + HEADER_SIZE, content);
+        buffer.putInt(writePosition + 4, checksum(content));
+        buffer.putInt(writePosition, content.length);
+        writePosition += recordSize;
+        return true;
+    }
+
+    /**
+     * Read the next messages to deliver without removing them.
+     *
+     * @param max the maximum number of messages to read
+     * @return the messages, may be empty
+     */
+    synchronized List<Record> peek(int max) {
+        List<Record> result = Collections.emptyList();
+        long segment = readSegment;
+        int position = readPosition;
+        while (result.size() < max) {
+            Record record = read(segment, position);
+            if (record == null) {
+                Long next = segments.higherKey(segment);
+                if (next == null) {
+                    break;
+                }
+                // continue with next segment
+                segment = next;
+                position = 0;
+                continue;
+            }
+
+            if (result.isEmpty()) {
+                result = new ArrayList<>();
+            }
+            result.add(record);
+            position = record.end;
+        }
+        return result;
+    }
+
+    /**
+     * Mark messages as delivered, up to and including the given one.
+     *
+     * @param last the last delivered message
+     */
+    synchronized void commit(Record last) {
+        if (offset == null) {
+            // closed
+            return;
+        }
+
+        readSegment = last.segment;
+        readPosition = last.end;
+
+        // remove segments that have been completely delivered
+        while (segments.firstKey() < readSegment) {
+            delete(segments.firstKey());
+        }
+
+        offset.putLong(0, readSegment);
+        offset.putInt(8, readPosition);
+        offset.putInt(12, offsetChecksum(readSegment, readPosition));
+    }
+
+    /**
+     * @return if there are no messages to deliver
+     */
+    synchronized boolean isEmpty() {
+        return peek(1).isEmpty();
+    }
+
+    /**
+     * Write all changes to disk and close the spool.
+     */
+    synchronized void close() {
+        for (MappedByteBuffer buffer : segments.values()) {
+            buffer.force();
+        }
+        segments.clear();
+        if (offset != null) {
+            offset.force();
+            offset = null;
+        }
+    }
+
+    private MappedByteBuffer rotate() throws IOException {
+        writeSegment++;
+        writePosition = 0;
+        MappedByteBuffer buffer = map(segmentFile(writeSegment), segmentSize);
+        segments.put(writeSegment, buffer);
+
+        long size = 0;
+        for (MappedByteBuffer segment : segments.values()) {
+            size += segment.capacity();
+        }
+        while (size > maxSize && segments.size() > 1) {
+            long oldest = segments.firstKey();
+            size -= segments.get(oldest).capacity();
+            if (oldest >= readSegment) {
+                status.addWarn("Slack spool in " + directory + " exceeds its maximum size, discarding oldest messages");
+                readSegment = segments.higherKey(oldest);
+                readPosition = 0;
+            }
+            delete(oldest);
+        }
+        return buffer;
+    }
+
+    private Record read(long segment, int position) {
+        MappedByteBuffer buffer = segments.get(segment);
+        if (buffer == null || position + HEADER_SIZE > buffer.capacity()) {
+            return null;
+        }
+        int length = buffer.getInt(position);
+        if (length <= 0 || position + HEADER_SIZE + length > buffer.capacity()) {
+            return null;
+        }
+        byte[] content = new byte[length];
+        buffer.get(position + HEADER_SIZE, content);
+        if (checksum(content) != buffer.getInt(position + 4)) {
+            // incomplete or corrupt record
+            return null;
+        }
+
+        ByteBuffer in = ByteBuffer.wrap(content);
+        URI uri = URI.create(readString(in));
+        String destination = readString(in);
+        String contentType = readString(in);
+        int events = in.getInt();
+        byte[] body = new byte[in.remaining()];
+        in.get(body);
+        return new Record(segment, position + HEADER_SIZE + length, uri, destination, contentType, events, body);
+    }
+
+    private void delete(long segment) {
+        segments.remove(segment);
+        try {
+            Files.deleteIfExists(segmentFile(segment));
+        } catch (IOException e) {
+            status.addWarn("Could not delete Slack spool segment " + segmentFile(segment), e);
+        }
+    }
+
+    private Path segmentFile(long segment) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+    }
+
+    private MappedByteBuffer map(Path file, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, Set.of(StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE), ownerOnly(OWNER_ONLY_FILE))) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    /**
+     * Get the attributes restricting access to a new file to its owner.
+     *
+     * @param permissions the POSIX permissions
+     * @return the attributes, empty if the file system does not support POSIX
+     *   permissions
+     */
+    private FileAttribute<?>[] ownerOnly(String permissions) {
+        if (!directory.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            return new FileAttribute<?>[0];
+        }
+        return new FileAttribute<?>[] { PosixFilePermissions.asFileAttribute(
+                PosixFilePermissions.fromString(permissions)) };
+    }
+
+    private static boolean writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_STRING_LENGTH) {
+            // length would not fit into the record
+            return false;
+        }
+        out.writeShort(bytes.length);
+        out.write(bytes);
+        return true;
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getShort() & 0xFFFF;
+        String result = new String(in.array(), in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return result;
+    }
+
+    private static int checksum(byte[] content) {
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        return (int) crc.getValue();
+    }
+
+    private static int offsetChecksum(long segment, int position) {
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocate(12);
+        buffer.putLong(segment).putInt(position);
+        crc.update(buffer.array());
+        // never 0, so an empty offset file is not valid
+        return (int) crc.getValue() | 1;
+    }
+
+}
@@ -0,0 +1,69 @@
+package com.github.maricn.logback;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ch.qos.logback.classic.pattern.ThrowableHandlingConverter;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+
+/**
+ * Pattern converter rendering the throwable of an event compactly for
+ * Slack, see {@link SlackThrowableRenderer}.
+ *
+ * Register it with
+ * <code>&lt;conversionRule conversionWord="slackEx" converterClass="com.github.maricn.logback.SlackThrowableConverter"/&gt;</code>
+ * and use it like <code>%slackEx{maxLength, cacheSize, package...}</code>,
+ * where all options are optional: the maximum number of characters
+ * (default 8000), the number of cached stack traces (default 256) and
+ * further packages whose frames are collapsed.
+ */
+public class SlackThrowableConverter extends ThrowableHandlingConverter {
+
+    private static final int DEFAULT_MAX_LENGTH = 8_000;
+    private static final int DEFAULT_CACHE_SIZE = 256;
+
+    private SlackThrowableRenderer renderer;
+
+    @Override
+    public void start() {
+        int maxLength = DEFAULT_MAX_LENGTH;
+        int cacheSize = DEFAULT_CACHE_SIZE;
+        List<String> frameworkPackages = new ArrayList<>(SlackThrowableRenderer.DEFAULT_FRAMEWORK_PACKAGES);
+
+        List<String> options = getOptionList();
+        if (options != null) {
+            for (int i = 0; i < options.size(); i++) {
+                String option = options.get(i).trim();
+                if (i < 2) {
+                    try {
+                        if (i == 0) {
+                            maxLength = Integer.parseInt(option);
+                        }
+                        else {
+                            cacheSize = Integer.parseInt(option);
+                        }
+                    } catch (NumberFormatException e) {
+                        addWarn("Invalid option " + option + " for Slack throwable converter, using default");
+                    }
+                }
+                else if (!option.isEmpty()) {
+                    frameworkPackages.add(option);
+                }
+            }
+        }
+
+        renderer = new SlackThrowableRenderer(maxLength, cacheSize, frameworkPackages);
+        super.start();
+    }
+
+    @Override
+    public String convert(ILoggingEvent event) {
+        IThrowableProxy throwable = event.getThrowableProxy();
+        if (throwable == null) {
+            return "";
+        }
+        return renderer.render(throwable);
+    }
+
+}
@@ -0,0 +1,354 @@
+package com.github.maricn.logback;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.classic.spi.StackTraceElementProxy;
+
+/**
+ * Renders throwables compactly for Slack.
+ *
+ * Consecutive frames from framework packages are collapsed into a single
+ * line per package, and frames a cause or suppressed exception has in common
+ * with the enclosing throwable are omitted. Suppressed exceptions are
+ * rendered indented after the frames of the throwable that suppressed them,
+ * within the same budget as the causes. The rendered frames are cached in a
+ * bounded LRU cache keyed by a hash of the stack frames, so a repeatedly
+ * thrown exception is only rendered once. The class names and frames are stored with the cached
+ * frames and compared on a hit, so a hash collision cannot render the frames
+ * of another exception. Messages are not part of the key and are added to
+ * the cached frames on every call.
+ */
+class SlackThrowableRenderer {
+
+    /**
+     * A throwable with its causes and suppressed exceptions in the order they
+     * are rendered, each with the prefix of its first line.
+     */
+    private static final class Nested {
+
+        final List<IThrowableProxy> throwables = new ArrayList<>();
+        final List<String> prefixes = new ArrayList<>();
+
+        Nested(IThrowableProxy throwable) {
+            add(throwable, "", "");
+        }
+
+        private void add(IThrowableProxy throwable, String indent, String prefix) {
+            String first = prefix;
+            for (IThrowableProxy current = throwable; current != null && throwables.size() < MAX_THROWABLES;
+                    current = current.getCause()) {
+                throwables.add(current);
+                prefixes.add(indent + first);
+                first = "Caused by: ";
+                IThrowableProxy[] suppressed = current.getSuppressed();
+                if (suppressed != null) {
+                    for (IThrowableProxy exception : suppressed) {
+                        add(exception, indent + "\t", "Suppressed: ");
+                    }
+                }
+            }
+        }
+
+        int size() {
+            return throwables.size();
+        }
+
+    }
+
+    /**
+     * Rendered frames of a throwable, its causes and suppressed exceptions,
+     * together with the class names and frames they were rendered from.
+     */
+    private static final class CachedFrames {
+
+        private final String[] prefixes;
+        private final String[] classNames;
+        private final int[] commonFrames;
+        private final StackTraceElement[][] elements;
+
+        final String[] frames;
+
+        CachedFrames(IThrowableProxy throwable, String[] frames) {
+            Nested nested = new Nested(throwable);
+            this.prefixes = nested.prefixes.toArray(new String[0]);
+            this.classNames = new String[nested.size()];
+            this.commonFrames = new int[nested.size()];
+            this.elements = new StackTraceElement[nested.size()][];
+            for (int i = 0; i < nested.size(); i++) {
+                IThrowableProxy cause = nested.throwables.get(i);
+                classNames[i] = cause.getClassName();
+                commonFrames[i] = cause.getCommonFrames();
+                // only the elements are kept, not the proxy referencing the throwable
+                StackTraceElementProxy[] steps = cause.getStackTraceElementProxyArray();
+                elements[i] = new StackTraceElement[steps.length];
+                for (int j = 0; j < steps.length; j++) {
+                    elements[i][j] = steps[j].getStackTraceElement();
+                }
+            }
+            this.frames = frames;
+        }
+
+        /**
+         * @return if the frames were rendered from a throwable with the same
+         *   structure, class names and frames
+         */
+        boolean matches(IThrowableProxy throwable) {
+            Nested nested = new Nested(throwable);
+            if (nested.size() != classNames.length) {
+                return false;
+            }
+            for (int i = 0; i < classNames.length; i++) {
+                IThrowableProxy current = nested.throwables.get(i);
+                if (!prefixes[i].equals(nested.prefixes.get(i)) || !classNames[i].equals(current.getClassName())
+                        || commonFrames[i] != current.getCommonFrames()) {
+                    return false;
+                }
+                StackTraceElementProxy[] steps = current.getStackTraceElementProxyArray();
+                if (steps.length != elements[i].length) {
+                    return false;
+                }
+                for (int j = 0; j < steps.length; j++) {
+                    if (!elements[i][j].equals(steps[j].getStackTraceElement())) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+    }
+
+    /**
+     * Packages whose frames are collapsed by default.
+     */
+    static final List<String> DEFAULT_FRAMEWORK_PACKAGES = Arrays.asList(
+            "java.lang.reflect.", "jdk.internal.reflect.", "sun.reflect.", "java.util.concurrent.",
+            "jdk.proxy", "com.sun.proxy.", "org.springframework.", "org.apache.catalina.",
+            "org.apache.coyote.", "org.apache.tomcat.", "org.eclipse.jetty.", "io.undertow.", "io.netty.",
+            "reactor.core.", "org.glassfish.jersey.", "org.codehaus.groovy.", "groovy.lang.");
+
+    /**
+     * Maximum number of throwables rendered, including causes and suppressed
+     * exceptions.
+     */
+    private static final int MAX_THROWABLES = 20;
+
+    private final int maxLength;
+    private final int cacheSize;
+    private final String[] frameworkPackages;
+
+    private final LinkedHashMap<Long, CachedFrames> cache;
+
+    /**
+     * Create a new renderer.
+     *
+     * @param maxLength the approximate maximum number of characters to
+     *   render, exceeded by at most a truncation notice, <code>0</code> for
+     *   no limit
+     * @param cacheSize the maximum number of cached stack traces,
+     *   <code>0</code> to disable caching
+     * @param frameworkPackages the prefixes of class names whose frames are
+     *   collapsed
+     */
+    SlackThrowableRenderer(int maxLength, int cacheSize, List<String> frameworkPackages) {
+        this.maxLength = maxLength > 0 ? maxLength : Integer.MAX_VALUE;
+        this.cacheSize = cacheSize;
+        this.frameworkPackages = frameworkPackages.toArray(new String[0]);
+        this.cache = new LinkedHashMap<Long, CachedFrames>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CachedFrames> eldest) {
+                return size() > SlackThrowableRenderer.this.cacheSize;
+            }
+
+        };
+    }
+
+    /**
+     * Render a throwable, its causes and suppressed exceptions.
+     *
+     * @param throwable the throwable
+     * @return the rendered throwable, ending with a line break
+     */
+    String render(IThrowableProxy throwable) {
+        String[] frames = frames(throwable);
+        Nested nested = new Nested(throwable);
+
+        StringBuilder builder = new StringBuilder(256);
+        for (int i = 0; i < frames.length && i < nested.size(); i++) {
+            IThrowableProxy current = nested.throwables.get(i);
+            builder.append(nested.prefixes.get(i)).append(current.getClassName());
+            String message = current.getMessage();
+            if (message != null) {
+                builder.append(": ");
+                // room for the ellipsis and the line break
+                int room = maxLength - builder.length() - 2;
+                if (message.length() > room) {
+                    // messages are not part of the cached frames and may be huge
+                    int end = Math.max(0, room);
+                    if (end > 0 && Character.isHighSurrogate(message.charAt(end - 1))) {
+                        end--;
+                    }
+                    builder.append(message, 0, end).append('\u2026');
+                }
+                else {
+                    builder.append(message);
+                }
+            }
+            builder.append('\n').append(frames[i]);
+            if (builder.length() >= maxLength) {
+                // the rest would be truncated anyway
+                break;
+            }
+        }
+        int end = builder.length() > maxLength ? builder.lastIndexOf("\n", maxLength - 1) + 1 : 0;
+        if (end > 0) {
+            // cut after the last complete line within the limit
+            builder.setLength(end);
+            builder.append("\t... truncated\n");
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Get the rendered frames of a throwable, its causes and suppressed
+     * exceptions, from the cache if possible.
+     */
+    private String[] frames(IThrowableProxy throwable) {
+        if (cacheSize <= 0) {
+            return renderFrames(throwable);
+        }
+
+        Long key = hash(throwable);
+        CachedFrames cached;
+        synchronized (cache) {
+            cached = cache.get(key);
+        }
+        if (cached != null && cached.matches(throwable)) {
+            return cached.frames;
+        }
+        // not cached, or a different exception with the same hash
+        String[] frames = renderFrames(throwable);
+        synchronized (cache) {
+            cache.put(key, new CachedFrames(throwable, frames));
+        }
+        return frames;
+    }
+
+    /**
+     * Compute a 64 bit FNV-1a hash of the structure, class names and stack
+     * frames of a throwable, its causes and suppressed exceptions.
+     * Package-private, so tests can provoke collisions.
+     */
+    long hash(IThrowableProxy throwable) {
+        long hash = 0xcbf29ce484222325L;
+        Nested nested = new Nested(throwable);
+        for (int i = 0; i < nested.size(); i++) {
+            IThrowableProxy current = nested.throwables.get(i);
+            hash = mix(hash, nested.prefixes.get(i).hashCode());
+            hash = mix(hash, current.getClassName().hashCode());
+            hash = mix(hash, current.getCommonFrames());
+            for (StackTraceElementProxy step : current.getStackTraceElementProxyArray()) {
+                StackTraceElement element = step.getStackTraceElement();
+                hash = mix(hash, element.getClassName().hashCode());
+                hash = mix(hash, element.getMethodName().hashCode());
+                hash = mix(hash, element.getLineNumber());
+            }
+        }
+        return hash;
+    }
+
+    private static long mix(long hash, int value) {
+        return (hash ^ value) * 0x100000001b3L;
+    }
+
+    /**
+     * Render the frames of a throwable, its causes and suppressed
+     * exceptions, without the cache.
+     *
+     * @param throwable the throwable
+     * @return the rendered frames per throwable, in the order they are
+     *   rendered
+     */
+    String[] renderFrames(IThrowableProxy throwable) {
+        List<String> result = new ArrayList<>();
+        int length = 0;
+        Nested nested = new Nested(throwable);
+        for (int i = 0; i < nested.size() && length < maxLength; i++) {
+            String prefix = nested.prefixes.get(i);
+            // suppressed exceptions are indented like their first line
+            String indent = prefix.substring(0, prefix.length() - prefix.stripLeading().length());
+            String frames = renderFrames(nested.throwables.get(i), indent, maxLength - length);
+            result.add(frames);
+            length += frames.length();
+        }
+        return result.toArray(new String[0]);
+    }
+
+    private String renderFrames(IThrowableProxy throwable, String indent, int budget) {
+        StringBuilder builder = new StringBuilder(256);
+        StackTraceElementProxy[] steps = throwable.getStackTraceElementProxyArray();
+        int count = steps.length - throwable.getCommonFrames();
+
+        String collapsedPackage = null;
+        int collapsed = 0;
+        StackTraceElement lastCollapsed = null;
+        int i = 0;
+        for (; i < count && builder.length() < budget; i++) {
+            StackTraceElement element = steps[i].getStackTraceElement();
+            // the frame that threw is always shown
+            String frameworkPackage = i > 0 ? frameworkPackage(element.getClassName()) : null;
+            if (frameworkPackage != null && frameworkPackage.equals(collapsedPackage)) {
+                collapsed++;
+                lastCollapsed = element;
+                continue;
+            }
+            appendCollapsed(builder, indent, collapsedPackage, collapsed, lastCollapsed);
+            collapsedPackage = frameworkPackage;
+            collapsed = frameworkPackage != null ? 1 : 0;
+            lastCollapsed = element;
+            if (frameworkPackage == null) {
+                builder.append(indent).append("\tat ").append(element).append('\n');
+            }
+        }
+        appendCollapsed(builder, indent, collapsedPackage, collapsed, lastCollapsed);
+
+        if (i < count) {
+            builder.append(indent).append("\t... ").append(count - i).append(" more frames\n");
+        }
+        if (throwable.getCommonFrames() > 0) {
+            builder.append(indent).append("\t... ").append(throwable.getCommonFrames())
+                    .append(" common frames omitted\n");
+        }
+        return builder.toString();
+    }
+
+    private static void appendCollapsed(StringBuilder builder, String indent, String frameworkPackage,
+            int collapsed, StackTraceElement lastCollapsed) {
+        if (collapsed == 1) {
+            builder.append(indent).append("\tat ").append(lastCollapsed).append('\n');
+        }
+        else if (collapsed > 1) {
+            builder.append(indent).append("\t... ").append(collapsed).append(" frames in ")
+                    .append(frameworkPackage, 0, frameworkPackage.length() - (frameworkPackage.endsWith(".") ? 1 : 0))
+                    .append('\n');
+        }
+    }
+
+    private String frameworkPackage(String className) {
+        for (String frameworkPackage : frameworkPackages) {
+            if (className.startsWith(frameworkPackage)) {
+                return frameworkPackage;
+            }
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,42 @@
+package com.github.maricn.logback;
+
+import java.io.IOException;
+import java.net.URI;
+
+/**
+ * Transport used by the {@link SlackAppender} to post messages to Slack.
+ *
+ * Implementations must be thread-safe, as they may be used by multiple
+ * sender threads at once.
+ */
+public interface SlackTransport {
+
+    /**
+     * Prepare the transport for use. Called when the appender is started.
+     *
+     * @param timeout the timeout configured for the appender in milliseconds
+     */
+    default void start(int timeout) {
+        // nothing to do by default
+    }
+
+    /**
+     * Post a message.
+     *
+     * @param uri the URI to post to
+     * @param contentType the content type of the message
+     * @param body the message body
+     * @return the response
+     * @throws IOException if posting the message failed
+     */
+    SlackResponse post(URI uri, String contentType, byte[] body) throws IOException;
+
+    /**
+     * Release any resources held by the transport. Called when the appender
+     * is stopped.
+     */
+    default void stop() {
+        // nothing to do by default
+    }
+
+}
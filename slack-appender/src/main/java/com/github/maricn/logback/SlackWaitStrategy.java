@@ -0,0 +1,26 @@
+package com.github.maricn.logback;
+
+/**
+ * How sender threads wait for events to arrive.
+ */
+enum SlackWaitStrategy {
+
+    /**
+     * Busy spin, lowest latency but occupies a CPU core per sender thread
+     * even while idle.
+     */
+    SPIN,
+
+    /**
+     * Yield to other threads while waiting, low latency but still consumes
+     * CPU while idle.
+     */
+    YIELD,
+
+    /**
+     * Park until signalled by a producer. Producers only pay for the signal
+     * while sender threads are actually waiting.
+     */
+    PARK
+
+}
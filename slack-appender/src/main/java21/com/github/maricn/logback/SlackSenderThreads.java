@@ -0,0 +1,37 @@
+package com.github.maricn.logback;
+
+/**
+ * Creates the sender threads of the {@link SlackDispatcher}.
+ *
+ * This implementation is used on Java 21 and later and supports virtual
+ * threads. Sender threads block on posting to Slack, virtual threads allow
+ * many of them at a negligible memory cost.
+ */
+final class SlackSenderThreads {
+
+    private SlackSenderThreads() {
+    }
+
+    /**
+     * @return if virtual threads are supported by the running JVM
+     */
+    static boolean isVirtualSupported() {
+        return true;
+    }
+
+    /**
+     * Create a sender thread, which is not started yet.
+     *
+     * @param name the thread name
+     * @param task the task run by the thread
+     * @param virtual if a virtual thread should be created
+     * @return the thread
+     */
+    static Thread newThread(String name, Runnable task, boolean virtual) {
+        if (virtual) {
+            return Thread.ofVirtual().name(name).unstarted(task);
+        }
+        return Thread.ofPlatform().name(name).daemon(true).unstarted(task);
+    }
+
+}
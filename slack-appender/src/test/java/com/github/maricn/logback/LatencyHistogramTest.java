@@ -0,0 +1,78 @@
+package com.github.maricn.logback;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.jupiter.api.Test;
+
+public class LatencyHistogramTest {
+
+    private static void assertWithinError(long expected, long actual) {
+        assertTrue(actual >= expected && actual <= expected + expected / 8, expected + " vs. " + actual);
+    }
+
+    @Test
+    public void testBuckets() {
+        for (long value = 0; value < 100_000; value++) {
+            assertBucket(value);
+        }
+        for (int i = 0; i < 100_000; i++) {
+            assertBucket(ThreadLocalRandom.current().nextLong(Long.MAX_VALUE));
+        }
+        assertBucket(Long.MAX_VALUE);
+    }
+
+    private static void assertBucket(long value) {
+        int index = LatencyHistogram.index(value);
+        long highest = LatencyHistogram.highestValue(index);
+        assertTrue(highest >= value, value + " in bucket up to " + highest);
+        if (index > 0) {
+            assertTrue(LatencyHistogram.highestValue(index - 1) < value, value + " in bucket " + index);
+        }
+        assertTrue(highest - value <= value / 8, value + " in bucket up to " + highest);
+    }
+
+    @Test
+    public void testEmpty() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMean());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getPercentile(99));
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 10_000; value++) {
+            histogram.record(value * 1_000);
+        }
+        // ignored
+        histogram.record(-1);
+
+        assertEquals(10_000, histogram.getCount());
+        assertEquals(5_000_500, histogram.getMean(), 0.001);
+        assertEquals(10_000_000, histogram.getMax());
+        assertWithinError(1_000, histogram.getPercentile(0));
+        assertWithinError(5_000_000, histogram.getPercentile(50));
+        assertWithinError(9_000_000, histogram.getPercentile(90));
+        assertWithinError(9_990_000, histogram.getPercentile(99.9));
+        // never above the maximum
+        assertEquals(10_000_000, histogram.getPercentile(100));
+    }
+
+    @Test
+    public void testOutlier() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 999; i++) {
+            histogram.record(2_000_000);
+        }
+        histogram.record(30_000_000_000L);
+
+        assertWithinError(2_000_000, histogram.getPercentile(99.9));
+        assertEquals(30_000_000_000L, histogram.getPercentile(100));
+    }
+
+}
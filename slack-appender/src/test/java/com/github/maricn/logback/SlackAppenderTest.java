@@ -0,0 +1,580 @@
+package com.github.maricn.logback;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.MarkerFactory;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.status.Status;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import to.wetf.logging.slf4j.Markers;
+
+public class SlackAppenderTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * Transport recording the posted messages, responding with the queued
+     * responses first and with success once they are used up.
+     */
+    private static class RecordingTransport implements SlackTransport {
+
+        final List<String> messages = Collections.synchronizedList(new ArrayList<>());
+        final List<URI> uris = Collections.synchronizedList(new ArrayList<>());
+        final List<Long> times = Collections.synchronizedList(new ArrayList<>());
+        final Queue<SlackResponse> responses = new ConcurrentLinkedQueue<>();
+
+        @Override
+        public SlackResponse post(URI uri, String contentType, byte[] body) throws IOException {
+            times.add(System.nanoTime());
+            uris.add(uri);
+            messages.add(new String(body, StandardCharsets.UTF_8));
+            SlackResponse response = responses.poll();
+            return response != null ? response : new SlackResponse(200, "ok", -1);
+        }
+
+        void awaitMessages(int count) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (messages.size() < count && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            assertEquals(count, messages.size());
+        }
+
+    }
+
+    private static SlackAppender appender(LoggerContext context, SlackTransport transport) {
+        SlackAppender appender = new SlackAppender();
+        appender.setContext(context);
+        appender.setWebhookUri("https://hooks.slack.test/services/T000/B000/secret");
+        appender.setTransport(transport);
+        return appender;
+    }
+
+    private static LoggingEvent event(Logger logger, Level level, String message) {
+        return new LoggingEvent(Logger.class.getName(), logger, level, message, null, null);
+    }
+
+    private static JsonNode parse(String message) throws IOException {
+        return MAPPER.readTree(message);
+    }
+
+    private static List<Integer> attachmentCounts(List<String> messages) throws IOException {
+        List<Integer> counts = new ArrayList<>();
+        synchronized (messages) {
+            for (String message : messages) {
+                counts.add(parse(message).get("attachments").size());
+            }
+        }
+        return counts;
+    }
+
+    private static int length(String[] parts) {
+        // the line break between the parts is not included
+        int length = 0;
+        for (String part : parts) {
+            length += part.length();
+        }
+        return length;
+    }
+
+    @Test
+    public void testSplitWithoutLimit() {
+        assertArrayEquals(new String[] { "single line" }, SlackAppender.splitMessage("single line", 0));
+        assertArrayEquals(new String[] { "first", "second\nthird" },
+                SlackAppender.splitMessage("first\nsecond\nthird", 0));
+        assertArrayEquals(new String[] { "short", "message" }, SlackAppender.splitMessage("short\nmessage", 100));
+    }
+
+    @Test
+    public void testTruncationMarker() {
+        String message = "x".repeat(1000);
+        String[] parts = SlackAppender.splitMessage(message, 100);
+
+        assertEquals(1, parts.length);
+        assertTrue(parts[0].startsWith("x".repeat(60)));
+        String truncated = parts[0].substring(parts[0].indexOf('\u2026'));
+        assertEquals("\u2026 [" + (1000 - 60) + " characters truncated]", truncated);
+        assertTrue(parts[0].length() <= 100);
+    }
+
+    @Test
+    public void testTruncateAtLineBoundary() {
+        StringBuilder message = new StringBuilder("first line");
+        for (int i = 0; i < 100; i++) {
+            message.append("\n\tat com.example.Frame").append(i).append("(Frame.java:").append(i).append(')');
+        }
+        String[] parts = SlackAppender.splitMessage(message, 300);
+
+        assertEquals("first line", parts[0]);
+        int marker = parts[1].indexOf('\u2026');
+        // cut after a complete frame
+        assertEquals('\n', parts[1].charAt(marker - 1));
+        assertTrue(message.toString().startsWith(parts[0] + "\n" + parts[1].substring(0, marker)));
+        assertTrue(length(parts) + 1 <= 300);
+        int kept = parts[0].length() + 1 + marker;
+        assertTrue(parts[1].endsWith("[" + (message.length() - kept) + " characters truncated]"));
+    }
+
+    @Test
+    public void testLongLineNotCutAtEarlyBreak() {
+        // cutting at the line break would drop most of the budget
+        String message = "first\nsecond\n" + "y".repeat(1000);
+        String[] parts = SlackAppender.splitMessage(message, 200);
+
+        assertEquals("first", parts[0]);
+        assertTrue(parts[1].startsWith("second\n" + "y".repeat(100)));
+        assertEquals(200 - 40, parts[0].length() + 1 + parts[1].indexOf('\u2026'));
+    }
+
+    @Test
+    public void testSurrogatePairNotSplit() {
+        String rocket = "\uD83D\uDE80";
+        // the pair straddles the cut at 60 characters
+        String message = "a".repeat(59) + rocket + "b".repeat(100);
+        String[] parts = SlackAppender.splitMessage(message, 100);
+
+        String kept = parts[0].substring(0, parts[0].indexOf('\u2026'));
+        assertEquals("a".repeat(59), kept);
+        assertFalse(Character.isHighSurrogate(kept.charAt(kept.length() - 1)));
+        assertTrue(parts[0].endsWith("[" + (message.length() - 59) + " characters truncated]"));
+
+        // complete pair within the budget
+        message = "a".repeat(58) + rocket + "b".repeat(100);
+        parts = SlackAppender.splitMessage(message, 100);
+        assertEquals("a".repeat(58) + rocket, parts[0].substring(0, parts[0].indexOf('\u2026')));
+    }
+
+    @Test
+    public void testLimitShorterThanMarker() {
+        String[] parts = SlackAppender.splitMessage("first line\nsecond line", 10);
+        assertArrayEquals(new String[] { "first lin\u2026" }, parts);
+
+        parts = SlackAppender.splitMessage("abc\ndefghijklmnop", 8);
+        assertArrayEquals(new String[] { "abc", "def\u2026" }, parts);
+
+        parts = SlackAppender.splitMessage("abcdef", 1);
+        assertArrayEquals(new String[] { "\u2026" }, parts);
+    }
+
+    @Test
+    public void testRenderStopsAtLimit() {
+        LoggerContext context = new LoggerContext();
+        Logger logger = context.getLogger("com.example.Service");
+        StringBuilder message = new StringBuilder("first line");
+        for (int i = 0; i < 10_000; i++) {
+            message.append("\nline ").append(i);
+        }
+        LoggingEvent evt = new LoggingEvent(Logger.class.getName(), logger, Level.WARN, message.toString(), null,
+                null);
+
+        SlackAppender appender = new SlackAppender();
+        appender.setContext(context);
+        appender.setMaxEventLength(500);
+        String[] parts = appender.render(evt);
+
+        String complete = new SlackLayout().doLayout(evt);
+        assertEquals("-- [WARN]com.example.Service - first line", parts[0]);
+        assertTrue(length(parts) + 1 <= 500);
+        int marker = parts[1].indexOf('\u2026');
+        assertTrue(complete.startsWith(parts[0] + "\n" + parts[1].substring(0, marker)));
+        int kept = parts[0].length() + 1 + marker;
+        assertTrue(parts[1].endsWith("[" + (complete.length() - kept) + " characters truncated]"));
+
+        // same result as truncating the complete event
+        assertArrayEquals(SlackAppender.splitMessage(complete, 500), parts);
+    }
+
+    @Test
+    public void testLayoutCountsSkippedCharacters() {
+        LoggerContext context = new LoggerContext();
+        Logger logger = context.getLogger("test");
+        LoggingEvent evt = new LoggingEvent(Logger.class.getName(), logger, Level.INFO, "a\nb\nc".repeat(100), null,
+                null);
+        String complete = new SlackLayout().doLayout(evt);
+
+        StringBuilder buffer = new StringBuilder("prefix");
+        int length = new SlackLayout().doLayout(evt, buffer, 50);
+        assertEquals(complete.length(), length);
+        assertEquals("prefix" + complete.substring(0, 50), buffer.toString());
+
+        // short header is cut off as well
+        buffer.setLength(0);
+        assertEquals(complete.length(), new SlackLayout().doLayout(evt, buffer, 5));
+        assertEquals(complete.substring(0, 5), buffer.toString());
+    }
+
+    @Test
+    public void testImportantEventsNotSuppressed() {
+        LoggerContext context = new LoggerContext();
+        Logger logger = context.getLogger("com.example.Service");
+        RecordingTransport transport = new RecordingTransport();
+        SlackAppender appender = new SlackAppender();
+        appender.setContext(context);
+        appender.setWebhookUri("https://hooks.slack.test/services/T000/B000/secret");
+        appender.setTransport(transport);
+        appender.setDuplicateWindow(60_000);
+        appender.start();
+        try {
+            for (int i = 0; i < 3; i++) {
+                appender.doAppend(new LoggingEvent(Logger.class.getName(), logger, Level.ERROR, "failed", null,
+                        null));
+            }
+            // errors are suppressed like any other event
+            assertEquals(1, transport.messages.size());
+
+            for (int i = 0; i < 3; i++) {
+                LoggingEvent evt = new LoggingEvent(Logger.class.getName(), logger, Level.ERROR, "failed", null,
+                        null);
+                evt.addMarker(Markers.IMPORTANT);
+                appender.doAppend(evt);
+            }
+            assertEquals(4, transport.messages.size());
+        } finally {
+            appender.stop();
+        }
+        // roll-up of the suppressed errors
+        assertEquals(5, transport.messages.size());
+        assertTrue(transport.messages.get(4).contains("repeated 2 times"), transport.messages.get(4));
+    }
+
+    @Test
+    public void testFailingMetricsListener() {
+        LoggerContext context = new LoggerContext();
+        Logger logger = context.getLogger("com.example.Service");
+        RecordingTransport transport = new RecordingTransport();
+        SlackAppender appender = new SlackAppender();
+        appender.setContext(context);
+        appender.setWebhookUri("https://hooks.slack.test/services/T000/B000/secret");
+        appender.setTransport(transport);
+        appender.addMetricsListener(new SlackMetricsListener() {
+
+            @Override
+            public void onEventReceived(String appender) {
+                throw new IllegalStateException("received");
+            }
+
+            @Override
+            public void onEventsSent(String appender, int events) {
+                throw new IllegalStateException("sent");
+            }
+
+        });
+        appender.start();
+        try {
+            for (int i = 0; i < 3; i++) {
+                appender.doAppend(new LoggingEvent(Logger.class.getName(), logger, Level.ERROR, "failed " + i, null,
+                        null));
+            }
+        } finally {
+            appender.stop();
+        }
+
+        // posted once each, not treated as failed
+        assertEquals(3, transport.messages.size());
+        List<Status> statuses = context.getStatusManager().getCopyOfStatusList();
+        assertEquals(0, statuses.stream().filter(status -> status.getLevel() == Status.ERROR).count());
+        assertEquals(1, statuses.stream().filter(status -> status.getLevel() == Status.WARN
+                && status.getMessage().startsWith("Slack metrics listener")).count());
+    }
+
+    @Test
+    public void testInFlightLimitedInSyncMode() throws Exception {
+        LoggerContext context = new LoggerContext();
+        Logger logger = context.getLogger("com.example.Service");
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        SlackAppender appender = new SlackAppender();
+        appender.setContext(context);
+        appender.setWebhookUri("https://hooks.slack.test/services/T000/B000/secret");
+        appender.setMaxInFlightPerDestination(2);
+        appender.setTransport((uri, contentType, body) -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            inFlight.decrementAndGet();
+            return new SlackResponse(200, "ok", -1);
+        });
+        appender.start();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (int i = 0; i < 4; i++) {
+                String message = "failed " + i;
+                executor.execute(() -> appender.doAppend(new LoggingEvent(Logger.class.getName(), logger,
+                        Level.ERROR, message, null, null)));
+            }
+            while (inFlight.get() < 2) {
+                Thread.sleep(1);
+            }
+            // the other logging threads wait for a permit
+            Thread.sleep(50);
+            assertEquals(2, inFlight.get());
+        } finally {
+            release.countDown();
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+            appender.stop();
+        }
+        assertEquals(2, maxInFlight.get());
+    }
+
+    @Test
+    public void testAsyncHandOffAndDrainOnStop() throws Exception {
+        LoggerContext context = new LoggerContext();
+        Logger logger = context.getLogger("com.example.Service");
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingTransport transport = new RecordingTransport() {
+
+            @Override
+            public SlackResponse post(URI uri, String contentType, byte[] body) throws IOException {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.post(uri, contentType, body);
+            }
+
+        };
+        SlackAppender appender = appender(context, transport);
+        appender.setAsync(true);
+        appender.start();
+        try {
+            for (int i = 0; i < 5; i++) {
+                appender.doAppend(event(logger, Level.ERROR, "failed " + i));
+            }
+            // logging threads do not wait for the blocked transport
+            assertEquals(0, transport.messages.size());
+        } finally {
+            release.countDown();
+            appender.stop();
+        }
+
+        // all pending events posted in order before stop() returned, combined while draining
+        List<String> texts = new ArrayList<>();
+        for (String message : transport.messages) {
+            parse(message).get("attachments").forEach(attachment -> texts.add(attachment.get("text").asText()));
+        }
+        assertEquals(5, texts.size());
+        for (int i = 0; i < 5; i++) {
+            assertTrue(texts.get(i).endsWith("failed " + i), texts.get(i));
+        }
+    }
+
+    @Test
+    public void testBatchMaxEvents() throws Exception {
+        LoggerContext context = new LoggerContext();
+        Logger logger = context.getLogger("com.example.Service");
+        RecordingTransport transport = new RecordingTransport();
+        SlackAppender appender = appender(context, transport);
+        appender.setAsync(true);
+        appender.setBatchMaxEvents(10);
+        appender.setBatchLinger(10_000);
+        appender.start();
+        try {
+            for (int i = 0; i < 25; i++) {
+                appender.doAppend(event(logger, Level.ERROR, "failed " + i));
+            }
+            // the last batch lingers for further events
+            transport.awaitMessages(2);
+        } finally {
+            appender.stop();
+        }
+
+        assertEquals(List.of(10, 10, 5), attachmentCounts(transport.messages));
+        assertTrue(transport.messages.get(2).contains("failed 24"));
+    }
+
+    @Test
+    public void testBatchMaxBytes() throws Exception {
+        LoggerContext context = new LoggerContext();
+        Logger logger = context.getLogger("com.example.Service");
+        RecordingTransport transport = new RecordingTransport();
+        SlackAppender appender = appender(context, transport);
+        appender.setAsync(true);
+        appender.setBatchMaxEvents(10);
+        appender.setBatchMaxBytes(4_000);
+        appender.setRateLimitBurst(10);
+        appender.start();
+        try {
+            for (int i = 0; i < 10; i++) {
+                appender.doAppend(event(logger, Level.ERROR, i + " " + "x".repeat(500)));
+            }
+            transport.awaitMessages(4);
+        } finally {
+            appender.stop();
+        }
+
+        // a batch of ten events split into messages of three
+        assertEquals(List.of(3, 3, 3, 1), attachmentCounts(transport.messages));
+        for (String message : transport.messages) {
+            assertTrue(message.length() <= 4_000, message);
+        }
+    }
+
+    @Test
+    public void testRetryAfterRateLimited() throws Exception {
+        LoggerContext context = new LoggerContext();
+        Logger logger = context.getLogger("com.example.Service");
+        RecordingTransport transport = new RecordingTransport();
+        transport.responses.add(new SlackResponse(429, "rate_limited", SlackResponse.parseRetryAfter("1")));
+        SlackAppender appender = appender(context, transport);
+        appender.setAsync(true);
+        appender.start();
+        try {
+            appender.doAppend(event(logger, Level.ERROR, "failed"));
+            transport.awaitMessages(2);
+        } finally {
+            appender.stop();
+        }
+
+        // same message posted again after the requested time
+        assertEquals(transport.messages.get(0), transport.messages.get(1));
+        assertTrue(transport.times.get(1) - transport.times.get(0) >= TimeUnit.MILLISECONDS.toNanos(900));
+        assertEquals(0, context.getStatusManager().getCopyOfStatusList().stream()
+                .filter(status -> status.getLevel() == Status.ERROR).count());
+    }
+
+    @Test
+    public void testInvalidRetryAfter() throws Exception {
+        LoggerContext context = new LoggerContext();
+        Logger logger = context.getLogger("com.example.Service");
+        RecordingTransport transport = new RecordingTransport();
+        // HTTP dates are not supported, the default of one second is used
+        transport.responses.add(new SlackResponse(429, "rate_limited",
+                SlackResponse.parseRetryAfter("Wed, 21 Oct 2026 07:28:00 GMT")));
+        SlackAppender appender = appender(context, transport);
+        appender.setAsync(true);
+        appender.start();
+        try {
+            appender.doAppend(event(logger, Level.ERROR, "failed"));
+            transport.awaitMessages(2);
+        } finally {
+            appender.stop();
+        }
+
+        assertEquals(transport.messages.get(0), transport.messages.get(1));
+        assertTrue(transport.times.get(1) - transport.times.get(0) >= TimeUnit.MILLISECONDS.toNanos(900));
+    }
+
+    @Test
+    public void testRejectedByApi() throws Exception {
+        LoggerContext context = new LoggerContext();
+        Logger logger = context.getLogger("com.example.Service");
+        RecordingTransport transport = new RecordingTransport();
+        // the Web API responds with status 200 for errors
+        transport.responses.add(new SlackResponse(200, "{\"ok\":false,\"error\":\"channel_not_found\"}", -1));
+        SlackAppender appender = appender(context, transport);
+        appender.start();
+        try {
+            appender.doAppend(event(logger, Level.ERROR, "rejected"));
+            appender.doAppend(event(logger, Level.ERROR, "accepted"));
+        } finally {
+            appender.stop();
+        }
+
+        // not retried
+        assertEquals(2, transport.messages.size());
+        List<Status> errors = context.getStatusManager().getCopyOfStatusList().stream()
+                .filter(status -> status.getLevel() == Status.ERROR).collect(Collectors.toList());
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(0).getMessage().contains("rejected"), errors.get(0).getMessage());
+    }
+
+    @Test
+    public void testRoutes() throws Exception {
+        LoggerContext context = new LoggerContext();
+        Logger logger = context.getLogger("com.example.Service");
+        RecordingTransport transport = new RecordingTransport();
+        SlackAppender appender = appender(context, transport);
+        SlackRoute audit = new SlackRoute();
+        audit.setMarker("AUDIT");
+        audit.setWebhookUri("https://hooks.slack.test/services/T000/B001/audit");
+        appender.addRoute(audit);
+        SlackRoute errors = new SlackRoute();
+        errors.setLevel("ERROR");
+        errors.setChannel("#errors");
+        appender.addRoute(errors);
+        appender.start();
+        try {
+            LoggingEvent audited = event(logger, Level.ERROR, "audited");
+            audited.addMarker(MarkerFactory.getDetachedMarker("AUDIT"));
+            appender.doAppend(audited);
+            appender.doAppend(event(logger, Level.ERROR, "failed"));
+            appender.doAppend(event(logger, Level.WARN, "warning"));
+        } finally {
+            appender.stop();
+        }
+
+        assertEquals(3, transport.messages.size());
+        // first matching route
+        assertEquals("https://hooks.slack.test/services/T000/B001/audit", transport.uris.get(0).toString());
+        assertFalse(parse(transport.messages.get(0)).has("channel"));
+        assertEquals("https://hooks.slack.test/services/T000/B000/secret", transport.uris.get(1).toString());
+        assertEquals("#errors", parse(transport.messages.get(1)).get("channel").asText());
+        // default destination
+        assertEquals("https://hooks.slack.test/services/T000/B000/secret", transport.uris.get(2).toString());
+        assertFalse(parse(transport.messages.get(2)).has("channel"));
+    }
+
+    @Test
+    public void testChannelContextKey() throws Exception {
+        LoggerContext context = new LoggerContext();
+        Logger logger = context.getLogger("com.example.Service");
+        RecordingTransport transport = new RecordingTransport();
+        SlackAppender appender = appender(context, transport);
+        appender.setChannel("#default");
+        appender.setChannelContextKey("slackChannel");
+        SlackRoute errors = new SlackRoute();
+        errors.setLevel("ERROR");
+        errors.setChannel("#errors");
+        appender.addRoute(errors);
+        appender.start();
+        try {
+            LoggingEvent evt = event(logger, Level.ERROR, "for the team");
+            evt.addMarker(Markers.contextMarker(Map.of("slackChannel", "#team")));
+            appender.doAppend(evt);
+            evt = event(logger, Level.WARN, "blank channel");
+            evt.addMarker(Markers.contextMarker(Map.of("slackChannel", " ")));
+            appender.doAppend(evt);
+            appender.doAppend(event(logger, Level.ERROR, "failed"));
+        } finally {
+            appender.stop();
+        }
+
+        assertEquals(3, transport.messages.size());
+        // context channel takes precedence over the routes
+        assertEquals("#team", parse(transport.messages.get(0)).get("channel").asText());
+        assertEquals("#default", parse(transport.messages.get(1)).get("channel").asText());
+        assertEquals("#errors", parse(transport.messages.get(2)).get("channel").asText());
+    }
+
+}
@@ -0,0 +1,183 @@
+package com.github.maricn.logback;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import ch.qos.logback.core.ContextBase;
+import ch.qos.logback.core.spi.ContextAwareBase;
+
+public class SlackCircuitBreakerTest {
+
+    private static final URI WEBHOOK = URI.create("https://hooks.slack.test/services/T000/B000/first");
+
+    private static final URI OTHER_WEBHOOK = URI.create("https://hooks.slack.test/services/T000/B000/second");
+
+    private static final byte[] BODY = new byte[0];
+
+    /**
+     * Transport responding with a configurable status code.
+     */
+    private static class StubTransport implements SlackTransport {
+
+        final AtomicInteger statusCode = new AtomicInteger(200);
+        final AtomicInteger posts = new AtomicInteger();
+
+        @Override
+        public SlackResponse post(URI uri, String contentType, byte[] body) throws IOException {
+            posts.incrementAndGet();
+            int statusCode = this.statusCode.get();
+            if (statusCode < 0) {
+                throw new IOException("connection refused");
+            }
+            return new SlackResponse(statusCode, "", -1);
+        }
+
+    }
+
+    private static ContextAwareBase status() {
+        ContextAwareBase status = new ContextAwareBase();
+        status.setContext(new ContextBase());
+        return status;
+    }
+
+    @Test
+    public void testOpenAfterConsecutiveFailures() throws IOException {
+        StubTransport transport = new StubTransport();
+        SlackCircuitBreaker breaker = new SlackCircuitBreaker(transport, 3, 1000, status(), () -> 0);
+
+        transport.statusCode.set(500);
+        breaker.post(WEBHOOK, "application/json", BODY);
+        breaker.post(WEBHOOK, "application/json", BODY);
+        // a success resets the count
+        transport.statusCode.set(200);
+        breaker.post(WEBHOOK, "application/json", BODY);
+
+        transport.statusCode.set(-1);
+        for (int i = 0; i < 3; i++) {
+            assertThrows(IOException.class, () -> breaker.post(WEBHOOK, "application/json", BODY));
+        }
+        assertEquals(6, transport.posts.get());
+
+        transport.statusCode.set(200);
+        assertThrows(SlackCircuitOpenException.class, () -> breaker.post(WEBHOOK, "application/json", BODY));
+        assertEquals(6, transport.posts.get());
+
+        // other webhooks are not affected
+        assertEquals(200, breaker.post(OTHER_WEBHOOK, "application/json", BODY).getStatusCode());
+    }
+
+    @Test
+    public void testRejectedMessagesKeepCircuitClosed() throws IOException {
+        StubTransport transport = new StubTransport();
+        SlackCircuitBreaker breaker = new SlackCircuitBreaker(transport, 2, 1000, status(), () -> 0);
+
+        transport.statusCode.set(429);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(429, breaker.post(WEBHOOK, "application/json", BODY).getStatusCode());
+        }
+        assertEquals(5, transport.posts.get());
+    }
+
+    @Test
+    public void testHalfOpenSingleProbe() throws Exception {
+        AtomicLong now = new AtomicLong();
+        CountDownLatch probing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        StubTransport transport = new StubTransport() {
+
+            @Override
+            public SlackResponse post(URI uri, String contentType, byte[] body) throws IOException {
+                if (statusCode.get() == 200 && probing.getCount() > 0) {
+                    // keep the probe in flight
+                    probing.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        throw new InterruptedIOException();
+                    }
+                }
+                return super.post(uri, contentType, body);
+            }
+
+        };
+        SlackCircuitBreaker breaker = new SlackCircuitBreaker(transport, 1, 1000, status(), now::get);
+
+        transport.statusCode.set(503);
+        breaker.post(WEBHOOK, "application/json", BODY);
+        assertThrows(SlackCircuitOpenException.class, () -> breaker.post(WEBHOOK, "application/json", BODY));
+
+        // failed probe keeps the circuit open for another cool-down
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        breaker.post(WEBHOOK, "application/json", BODY);
+        assertEquals(2, transport.posts.get());
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(999));
+        assertThrows(SlackCircuitOpenException.class, () -> breaker.post(WEBHOOK, "application/json", BODY));
+
+        // only a single probe while half-open
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+        transport.statusCode.set(200);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<SlackResponse> probe = executor.submit(() -> breaker.post(WEBHOOK, "application/json", BODY));
+            assertTrue(probing.await(10, TimeUnit.SECONDS));
+            assertThrows(SlackCircuitOpenException.class, () -> breaker.post(WEBHOOK, "application/json", BODY));
+            release.countDown();
+
+            // successful probe closes the circuit
+            assertEquals(200, probe.get(10, TimeUnit.SECONDS).getStatusCode());
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(3, transport.posts.get());
+        assertEquals(200, breaker.post(WEBHOOK, "application/json", BODY).getStatusCode());
+        assertEquals(4, transport.posts.get());
+    }
+
+    @Test
+    public void testProbeThrowingError() throws IOException {
+        AtomicLong now = new AtomicLong();
+        StubTransport transport = new StubTransport() {
+
+            @Override
+            public SlackResponse post(URI uri, String contentType, byte[] body) throws IOException {
+                if (statusCode.get() == 0) {
+                    posts.incrementAndGet();
+                    throw new StackOverflowError();
+                }
+                return super.post(uri, contentType, body);
+            }
+
+        };
+        SlackCircuitBreaker breaker = new SlackCircuitBreaker(transport, 1, 1000, status(), now::get);
+
+        transport.statusCode.set(503);
+        breaker.post(WEBHOOK, "application/json", BODY);
+
+        // probe failing with an error opens the circuit again instead of leaving it half-open
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        transport.statusCode.set(0);
+        assertThrows(StackOverflowError.class, () -> breaker.post(WEBHOOK, "application/json", BODY));
+        assertEquals(2, transport.posts.get());
+        assertThrows(SlackCircuitOpenException.class, () -> breaker.post(WEBHOOK, "application/json", BODY));
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        transport.statusCode.set(200);
+        assertEquals(200, breaker.post(WEBHOOK, "application/json", BODY).getStatusCode());
+        assertEquals(3, transport.posts.get());
+    }
+
+}
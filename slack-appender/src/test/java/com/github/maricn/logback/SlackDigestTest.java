@@ -0,0 +1,116 @@
+package com.github.maricn.logback;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+
+public class SlackDigestTest {
+
+    private static final long START = 1_700_000_000_000L;
+
+    private static final LoggerContext CONTEXT = new LoggerContext();
+
+    private static LoggingEvent event(String logger, Level level, String message, Throwable throwable,
+            long timestamp) {
+        LoggingEvent evt = new LoggingEvent(Logger.class.getName(), CONTEXT.getLogger(logger), level, message,
+                throwable, null);
+        evt.setTimeStamp(timestamp);
+        return evt;
+    }
+
+    private static String[] lines(ILoggingEvent summary) {
+        return summary.getFormattedMessage().split("\n");
+    }
+
+    @Test
+    public void testEmptyWindow() {
+        SlackDigest digest = new SlackDigest(CONTEXT, "digest", 10, 100, START);
+        assertNull(digest.close(START + 60_000));
+    }
+
+    @Test
+    public void testGroups() {
+        SlackDigest digest = new SlackDigest(CONTEXT, "digest", 10, 100, START);
+        for (int i = 0; i < 3; i++) {
+            digest.add(event("com.example.Service", Level.WARN, "slow response " + i, null, START + i * 1000));
+        }
+        digest.add(event("com.example.Service", Level.ERROR, "failed", new IllegalStateException(), START + 5000));
+        // same group, message is not part of it
+        digest.add(event("com.example.Service", Level.ERROR, "failed again", new IllegalStateException(),
+                START + 6000));
+        digest.add(event("com.example.Other", Level.INFO, "first line\nsecond line", null, START + 7000));
+
+        ILoggingEvent summary = digest.close(START + 60_000);
+        assertEquals("digest", summary.getLoggerName());
+        assertEquals(Level.ERROR, summary.getLevel());
+        assertEquals(START + 60_000, summary.getTimeStamp());
+
+        String[] lines = lines(summary);
+        assertEquals(4, lines.length);
+        assertEquals("6 events in the last 60s in 3 groups", lines[0]);
+        assertTrue(lines[1].startsWith("*3x* WARN com.example.Service, "), lines[1]);
+        assertTrue(lines[1].endsWith(": slow response 0"), lines[1]);
+        assertTrue(lines[2].startsWith("*2x* ERROR com.example.Service (java.lang.IllegalStateException), "),
+                lines[2]);
+        assertTrue(lines[2].matches(".*\\d\\d:\\d\\d:\\d\\d - \\d\\d:\\d\\d:\\d\\d: failed"), lines[2]);
+        assertTrue(lines[3].startsWith("*1x* INFO com.example.Other, "), lines[3]);
+        // single occurrence, only the first line
+        assertTrue(lines[3].matches(".*, \\d\\d:\\d\\d:\\d\\d: first line"), lines[3]);
+
+        // new window
+        assertNull(digest.close(START + 120_000));
+        digest.add(event("com.example.Service", Level.INFO, "again", null, START + 130_000));
+        assertEquals("1 event in the last 20s in 1 group", lines(digest.close(START + 140_000))[0]);
+    }
+
+    @Test
+    public void testTopGroups() {
+        SlackDigest digest = new SlackDigest(CONTEXT, "digest", 2, 100, START);
+        for (int group = 1; group <= 4; group++) {
+            for (int i = 0; i < group; i++) {
+                digest.add(event("com.example.Logger" + group, Level.INFO, "message", null, START));
+            }
+        }
+
+        String[] lines = lines(digest.close(START + 1000));
+        assertEquals(4, lines.length);
+        assertEquals("10 events in the last 1s in 4 groups", lines[0]);
+        assertTrue(lines[1].startsWith("*4x* INFO com.example.Logger4"), lines[1]);
+        assertTrue(lines[2].startsWith("*3x* INFO com.example.Logger3"), lines[2]);
+        assertEquals("...and 3 further events", lines[3]);
+    }
+
+    @Test
+    public void testMaxGroups() {
+        SlackDigest digest = new SlackDigest(CONTEXT, "digest", 10, 2, START);
+        digest.add(event("com.example.First", Level.INFO, "message", null, START));
+        digest.add(event("com.example.Second", Level.INFO, "message", null, START));
+        // not tracked, but counted
+        digest.add(event("com.example.Third", Level.ERROR, "message", null, START));
+        digest.add(event("com.example.First", Level.INFO, "message", null, START));
+
+        ILoggingEvent summary = digest.close(START + 1000);
+        String[] lines = lines(summary);
+        assertEquals("4 events in the last 1s in 2 groups", lines[0]);
+        assertEquals("...and 1 further event", lines[lines.length - 1]);
+        assertEquals(Level.ERROR, summary.getLevel());
+    }
+
+    @Test
+    public void testLongSampleTruncated() {
+        SlackDigest digest = new SlackDigest(CONTEXT, "digest", 10, 100, START);
+        digest.add(event("com.example.Service", Level.INFO, "x".repeat(1000), null, START));
+
+        String[] lines = lines(digest.close(START + 1000));
+        assertTrue(lines[1].endsWith(": " + "x".repeat(200) + "\u2026"), lines[1]);
+    }
+
+}
@@ -0,0 +1,136 @@
+package com.github.maricn.logback;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import ch.qos.logback.classic.Level;
+
+public class SlackDispatcherTest {
+
+    private static SlackEvent event(Level level, String message) {
+        return new SlackEvent(level, "test", 0, new String[] { message }, Collections.emptyMap(), false);
+    }
+
+    private static SlackEvent summary(long dropped) {
+        return event(Level.WARN, dropped + " dropped");
+    }
+
+    @Test
+    public void testReportDropsBelowWatermark() {
+        SlackPriorityQueue queue = new SlackPriorityQueue(4, 0, SlackWaitStrategy.PARK,
+                SlackOverflowPolicy.DROP_NEWEST, Level.WARN, 100);
+        SlackDispatcher dispatcher = new SlackDispatcher("test", queue, 1, false, 1, 0, batch -> true);
+        for (int i = 0; i < 4; i++) {
+            assertEquals(0, dispatcher.offer(event(Level.INFO, "event")));
+        }
+        assertEquals(-1, dispatcher.offer(event(Level.INFO, "event")));
+        assertEquals(-1, dispatcher.offer(event(Level.INFO, "event")));
+        assertEquals(2, dispatcher.getDroppedCount());
+
+        // no summary while the queue is full
+        assertFalse(dispatcher.reportDrops(SlackDispatcherTest::summary));
+
+        List<SlackEvent> events = new ArrayList<>();
+        queue.drainTo(events, 3);
+        assertTrue(dispatcher.reportDrops(SlackDispatcherTest::summary));
+        // reported only once
+        assertFalse(dispatcher.reportDrops(SlackDispatcherTest::summary));
+
+        events.clear();
+        queue.drainTo(events, Integer.MAX_VALUE);
+        assertEquals(2, events.size());
+        assertEquals("2 dropped", events.get(1).parts[0]);
+        assertEquals(2, dispatcher.getDroppedCount());
+    }
+
+    @Test
+    public void testCountEvictedWhenDropped() {
+        long bytes = event(Level.INFO, "event").bytes;
+        SlackPriorityQueue queue = new SlackPriorityQueue(100, 2 * bytes, SlackWaitStrategy.PARK,
+                SlackOverflowPolicy.DROP_OLDEST, Level.WARN, 100);
+        SlackDispatcher dispatcher = new SlackDispatcher("test", queue, 1, false, 1, 0, batch -> true);
+        // an important event that may not be dropped for it
+        dispatcher.offer(new SlackEvent(Level.INFO, "test", 0, new String[] { "event" }, Collections.emptyMap(),
+                true));
+        dispatcher.offer(event(Level.INFO, "event"));
+
+        SlackEvent large = new SlackEvent(Level.INFO, "test", 0, new String[] { "x".repeat((int) bytes / 2) },
+                Collections.emptyMap(), false);
+        assertEquals(-2, dispatcher.offer(large));
+        assertEquals(2, dispatcher.getDroppedCount());
+    }
+
+    @Test
+    public void testCountResultsWhileDraining() throws InterruptedException {
+        SlackPriorityQueue queue = new SlackPriorityQueue(32, 0, SlackWaitStrategy.PARK,
+                SlackOverflowPolicy.DROP_NEWEST, Level.WARN, 100);
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch closed = new CountDownLatch(1);
+        AtomicInteger batches = new AtomicInteger();
+        SlackDispatcher dispatcher = new SlackDispatcher("test", queue, 1, false, 1, 0, batch -> {
+            sending.countDown();
+            try {
+                closed.await();
+            } catch (InterruptedException e) {
+                return false;
+            }
+            // the last batch fails
+            return batches.incrementAndGet() < 3;
+        });
+        for (int i = 0; i < 25; i++) {
+            dispatcher.offer(event(Level.INFO, "event " + i));
+        }
+        dispatcher.start();
+        assertTrue(sending.await(10, TimeUnit.SECONDS));
+        // the event in flight counts as well
+        dispatcher.close();
+        closed.countDown();
+
+        List<SlackEvent> abandoned = dispatcher.drain(System.nanoTime() + TimeUnit.SECONDS.toNanos(10));
+        assertTrue(abandoned.isEmpty());
+        // 1 + 20 events delivered, the last 4 failed
+        assertEquals(3, batches.get());
+        assertEquals(21, dispatcher.getFlushedCount());
+        assertEquals(4, dispatcher.getFailedCount());
+        assertEquals(0, dispatcher.getInterruptedCount());
+    }
+
+    @Test
+    public void testCountInterruptedAtDeadline() throws InterruptedException {
+        SlackPriorityQueue queue = new SlackPriorityQueue(16, 0, SlackWaitStrategy.PARK,
+                SlackOverflowPolicy.DROP_NEWEST, Level.WARN, 100);
+        CountDownLatch sending = new CountDownLatch(1);
+        SlackDispatcher dispatcher = new SlackDispatcher("test", queue, 1, false, 1, 0, batch -> {
+            sending.countDown();
+            try {
+                Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+                return true;
+            } catch (InterruptedException e) {
+                return false;
+            }
+        });
+        dispatcher.offer(event(Level.INFO, "slow"));
+        dispatcher.offer(event(Level.INFO, "queued"));
+        dispatcher.start();
+        assertTrue(sending.await(10, TimeUnit.SECONDS));
+
+        List<SlackEvent> abandoned = dispatcher.drain(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(50));
+        assertEquals(1, abandoned.size());
+        assertEquals("queued", abandoned.get(0).parts[0]);
+        // neither delivered nor failed
+        assertEquals(0, dispatcher.getFlushedCount());
+        assertEquals(0, dispatcher.getFailedCount());
+        assertEquals(1, dispatcher.getInterruptedCount());
+    }
+
+}
@@ -0,0 +1,108 @@
+package com.github.maricn.logback;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import to.wetf.logging.slf4j.Markers;
+
+public class SlackDuplicateSuppressorTest {
+
+    private static final long START = 1_700_000_000_000L;
+
+    private static final LoggerContext CONTEXT = new LoggerContext();
+
+    private static LoggingEvent event(Level level, String message, Object argument, long timestamp) {
+        LoggingEvent evt = new LoggingEvent(Logger.class.getName(), CONTEXT.getLogger("com.example.Service"), level,
+                message, null, new Object[] { argument });
+        evt.setTimeStamp(timestamp);
+        return evt;
+    }
+
+    @Test
+    public void testSuppressWithinWindow() {
+        SlackDuplicateSuppressor suppressor = new SlackDuplicateSuppressor(CONTEXT, 60_000, 100);
+
+        assertTrue(suppressor.accept(event(Level.ERROR, "Connection to {} failed", "db1", START)));
+        // same message pattern with different arguments
+        assertFalse(suppressor.accept(event(Level.ERROR, "Connection to {} failed", "db2", START + 1_000)));
+        assertFalse(suppressor.accept(event(Level.ERROR, "Connection to {} failed", "db1", START + 4_500)));
+        // different level or pattern
+        assertTrue(suppressor.accept(event(Level.WARN, "Connection to {} failed", "db1", START + 5_000)));
+        assertTrue(suppressor.accept(event(Level.ERROR, "Connection to {} lost", "db1", START + 5_000)));
+        assertTrue(suppressor.drainRollUps().isEmpty());
+
+        // window has passed
+        suppressor.expire(START + 59_999);
+        assertTrue(suppressor.drainRollUps().isEmpty());
+        suppressor.expire(START + 60_000);
+        List<ILoggingEvent> rollUps = suppressor.drainRollUps();
+        assertEquals(1, rollUps.size());
+        ILoggingEvent rollUp = rollUps.get(0);
+        assertEquals("...Connection to db1 failed (repeated 2 times in the last 5s)", rollUp.getFormattedMessage());
+        assertEquals(Level.ERROR, rollUp.getLevel());
+        assertEquals("com.example.Service", rollUp.getLoggerName());
+        assertEquals(START + 4_500, rollUp.getTimeStamp());
+        // drained only once
+        assertTrue(suppressor.drainRollUps().isEmpty());
+
+        // the other events were not repeated
+        suppressor.expire(START + 120_000);
+        assertTrue(suppressor.drainRollUps().isEmpty());
+    }
+
+    @Test
+    public void testNewWindowAfterRepeat() {
+        SlackDuplicateSuppressor suppressor = new SlackDuplicateSuppressor(CONTEXT, 10_000, 100);
+
+        assertTrue(suppressor.accept(event(Level.ERROR, "failed", null, START)));
+        assertFalse(suppressor.accept(event(Level.ERROR, "failed", null, START + 1_000)));
+        // repeated after the window, before it expired
+        assertTrue(suppressor.accept(event(Level.ERROR, "failed", null, START + 10_000)));
+        List<ILoggingEvent> rollUps = suppressor.drainRollUps();
+        assertEquals(1, rollUps.size());
+        assertEquals("...failed (repeated 1 times in the last 1s)", rollUps.get(0).getFormattedMessage());
+        assertFalse(suppressor.accept(event(Level.ERROR, "failed", null, START + 11_000)));
+    }
+
+    @Test
+    public void testEvictEldest() {
+        SlackDuplicateSuppressor suppressor = new SlackDuplicateSuppressor(CONTEXT, 60_000, 2);
+
+        assertTrue(suppressor.accept(event(Level.ERROR, "first", null, START)));
+        assertFalse(suppressor.accept(event(Level.ERROR, "first", null, START + 1)));
+        assertTrue(suppressor.accept(event(Level.ERROR, "second", null, START + 2)));
+        assertTrue(suppressor.accept(event(Level.ERROR, "third", null, START + 3)));
+
+        // the eldest fingerprint is reported early
+        List<ILoggingEvent> rollUps = suppressor.drainRollUps();
+        assertEquals(1, rollUps.size());
+        assertTrue(rollUps.get(0).getFormattedMessage().startsWith("...first (repeated 1 times"));
+        assertTrue(suppressor.accept(event(Level.ERROR, "first", null, START + 4)));
+    }
+
+    @Test
+    public void testRollUpKeepsMarkers() {
+        SlackDuplicateSuppressor suppressor = new SlackDuplicateSuppressor(CONTEXT, 10_000, 100);
+        for (int i = 0; i < 3; i++) {
+            LoggingEvent evt = event(Level.WARN, "first line\nsecond line", null, START + i);
+            evt.addMarker(Markers.SLACK);
+            suppressor.accept(evt);
+        }
+
+        suppressor.expire(Long.MAX_VALUE);
+        ILoggingEvent rollUp = suppressor.drainRollUps().get(0);
+        assertEquals("...first line (repeated 2 times in the last 1s)", rollUp.getFormattedMessage());
+        assertTrue(rollUp.getMarkerList().contains(Markers.SLACK));
+    }
+
+}
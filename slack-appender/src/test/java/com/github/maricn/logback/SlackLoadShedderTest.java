@@ -0,0 +1,103 @@
+package com.github.maricn.logback;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+
+public class SlackLoadShedderTest {
+
+    private static final LoggerContext CONTEXT = new LoggerContext();
+
+    private static LoggingEvent event(String logger, Level level) {
+        return new LoggingEvent(Logger.class.getName(), CONTEXT.getLogger(logger), level, "message", null, null);
+    }
+
+    private static int kept(SlackLoadShedder shedder, String logger, Level level, int events) {
+        int kept = 0;
+        for (int i = 0; i < events; i++) {
+            if (!shedder.shed(event(logger, level), false)) {
+                kept++;
+            }
+        }
+        return kept;
+    }
+
+    @Test
+    public void testLevelFromQueueFill() {
+        SlackLoadShedder shedder = new SlackLoadShedder(0.25, 0);
+        assertEquals(0, shedder.update(0.2));
+        assertEquals(1, shedder.update(0.25));
+        assertEquals(2, shedder.update(0.5));
+        assertEquals(2, shedder.update(0.99));
+        assertEquals(3, shedder.update(1));
+        // rises immediately
+        shedder = new SlackLoadShedder(0.1, 0);
+        assertEquals(SlackLoadShedder.MAX_LEVEL, shedder.update(1));
+        assertEquals(SlackLoadShedder.MAX_LEVEL, shedder.getLevel());
+
+        // decreases by one per update
+        assertEquals(3, shedder.update(0));
+        assertEquals(2, shedder.update(0));
+        assertEquals(2, shedder.update(0.2));
+        assertEquals(1, shedder.update(0));
+        assertEquals(0, shedder.update(0));
+        assertEquals(0, shedder.update(0));
+    }
+
+    @Test
+    public void testLevelFromLatency() {
+        SlackLoadShedder shedder = new SlackLoadShedder(0, 100);
+        shedder.recordLatency(TimeUnit.MILLISECONDS.toNanos(50));
+        assertEquals(10, shedder.getLatencyMillis(), 0.001);
+        assertEquals(0, shedder.update(1));
+
+        for (int i = 0; i < 100; i++) {
+            shedder.recordLatency(TimeUnit.MILLISECONDS.toNanos(250));
+        }
+        assertEquals(250, shedder.getLatencyMillis(), 0.001);
+        assertEquals(2, shedder.update(0));
+    }
+
+    @Test
+    public void testSampling() {
+        SlackLoadShedder shedder = new SlackLoadShedder(0.25, 0);
+        assertEquals(0, shedder.drainShedCount());
+        // nothing shed without pressure
+        assertEquals(10, kept(shedder, "com.example.Service", Level.DEBUG, 10));
+
+        assertEquals(2, shedder.update(0.5));
+        assertEquals(0, kept(shedder, "com.example.Service", Level.DEBUG, 10));
+        assertEquals(25, kept(shedder, "com.example.Service", Level.INFO, 100));
+        assertEquals(50, kept(shedder, "com.example.Service", Level.WARN, 100));
+        assertEquals(100, kept(shedder, "com.example.Service", Level.ERROR, 100));
+        assertEquals(10 + 75 + 50, shedder.drainShedCount());
+        assertEquals(0, shedder.drainShedCount());
+
+        // events that must be kept
+        for (int i = 0; i < 10; i++) {
+            assertFalse(shedder.shed(event("com.example.Service", Level.DEBUG), true));
+        }
+    }
+
+    @Test
+    public void testSamplingPerLogger() {
+        SlackLoadShedder shedder = new SlackLoadShedder(0.25, 0);
+        assertEquals(2, shedder.update(0.5));
+
+        // the first event of each logger is kept
+        assertFalse(shedder.shed(event("com.example.First", Level.INFO), false));
+        assertFalse(shedder.shed(event("com.example.Second", Level.INFO), false));
+        assertTrue(shedder.shed(event("com.example.First", Level.INFO), false));
+        assertTrue(shedder.shed(event("com.example.Second", Level.INFO), false));
+    }
+
+}
@@ -0,0 +1,193 @@
+package com.github.maricn.logback;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Compares the streamed payloads with the same structure serialized by
+ * Jackson databind.
+ */
+public class SlackPayloadWriterTest {
+
+    /**
+     * Text with quotes, backslash, control characters, non-ASCII characters
+     * and an emoji made of a surrogate pair.
+     */
+    private static final String ESCAPED = "say \"hi\" \\ to\ttab\r\nline \u0001\u001f </script> \u00e4\u20ac"
+            + " \uD83D\uDE80 end";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static Map<String, Object> attachment(String pretext, String text, String fallback, String color,
+            Map<String, String> context, String author, long timestamp) {
+        Map<String, Object> attachment = new LinkedHashMap<>();
+        if (pretext != null) {
+            attachment.put("pretext", pretext);
+        }
+        attachment.put("text", text);
+        if (fallback != null) {
+            attachment.put("fallback", fallback);
+            attachment.put("color", color);
+        }
+        if (context != null && !context.isEmpty()) {
+            List<Map<String, Object>> fields = new ArrayList<>();
+            for (Map.Entry<String, String> entry : context.entrySet()) {
+                Map<String, Object> field = new LinkedHashMap<>();
+                field.put("title", entry.getKey());
+                field.put("value", entry.getValue());
+                field.put("short", entry.getValue() == null || entry.getValue().length() <= 25);
+                fields.add(field);
+            }
+            attachment.put("fields", fields);
+        }
+        if (author != null) {
+            attachment.put("author_name", author);
+        }
+        if (timestamp >= 0) {
+            attachment.put("ts", timestamp);
+        }
+        return attachment;
+    }
+
+    private static Map<String, String> header(String channel) {
+        Map<String, String> fields = new LinkedHashMap<>();
+        fields.put("channel", channel);
+        fields.put("username", "logger \"" + ESCAPED + "\"");
+        fields.put("icon_emoji", ":exclamation:");
+        return fields;
+    }
+
+    private static Map<String, Object> message(Map<String, String> header, List<Map<String, Object>> attachments,
+            String text) {
+        Map<String, Object> message = new LinkedHashMap<>(header);
+        message.put("attachments", attachments);
+        if (text != null) {
+            message.put("text", text);
+        }
+        return message;
+    }
+
+    private static void assertSameBytes(Object expected, byte[] actual) throws IOException {
+        byte[] reference = MAPPER.writeValueAsBytes(expected);
+        // compare as text first for a readable failure
+        assertEquals(new String(reference, StandardCharsets.UTF_8), new String(actual, StandardCharsets.UTF_8));
+        assertArrayEquals(reference, actual);
+    }
+
+    private static void writeAttachment(SlackPayloadWriter writer, Map<String, Object> attachment,
+            Map<String, String> context) throws IOException {
+        Object ts = attachment.get("ts");
+        writer.writeAttachment((String) attachment.get("pretext"), (String) attachment.get("text"),
+                (String) attachment.get("fallback"), (String) attachment.get("color"), context, 25,
+                (String) attachment.get("author_name"), ts != null ? (Long) ts : -1);
+    }
+
+    @Test
+    public void testWebhookMessage() throws IOException {
+        Map<String, String> context = new LinkedHashMap<>();
+        context.put("order", "4711");
+        context.put("details", "a value that is longer than the short field limit " + ESCAPED);
+        context.put("missing", null);
+        Map<String, Object> attachment = attachment(ESCAPED, "second line\n" + ESCAPED, ESCAPED, "danger",
+                context, "com.example.Service", 1_700_000_000L);
+
+        SlackPayloadWriter writer = new SlackPayloadWriter();
+        writer.startMessage(SlackPayloadWriter.encodeMessageStart(header("#logs")));
+        writeAttachment(writer, attachment, context);
+        byte[] actual = writer.endMessage(SlackPayloadWriter.encodeMessageEnd(null));
+
+        assertSameBytes(message(header("#logs"), List.of(attachment), null), actual);
+    }
+
+    @Test
+    public void testImportantWebhookBatch() throws IOException {
+        List<Map<String, Object>> attachments = new ArrayList<>();
+        attachments.add(attachment(null, "first " + ESCAPED, "first", "#439FE0", null, "a", 1L));
+        attachments.add(attachment(null, "second", "second", null, null, "b", 2L));
+        attachments.add(attachment("third", ESCAPED, "third", "warning", Map.of("key", ESCAPED), null, 3L));
+        String text = "<!everyone> please have a look at this log message: " + ESCAPED;
+
+        SlackPayloadWriter writer = new SlackPayloadWriter();
+        writer.startMessage(SlackPayloadWriter.encodeMessageStart(header("#" + ESCAPED)));
+        for (Map<String, Object> attachment : attachments) {
+            @SuppressWarnings("unchecked")
+            List<Map<String, Object>> fields = (List<Map<String, Object>>) attachment.get("fields");
+            writeAttachment(writer, attachment, fields != null ? Map.of("key", ESCAPED) : null);
+        }
+        byte[] actual = writer.endMessage(SlackPayloadWriter.encodeMessageEnd(text));
+
+        assertSameBytes(message(header("#" + ESCAPED), attachments, text), actual);
+    }
+
+    @Test
+    public void testWriterReused() throws IOException {
+        SlackPayloadWriter writer = new SlackPayloadWriter();
+        byte[] start = SlackPayloadWriter.encodeMessageStart(new LinkedHashMap<>());
+        byte[] end = SlackPayloadWriter.encodeMessageEnd(null);
+
+        // an abandoned message does not leak into the next one
+        writer.startMessage(start);
+        writer.writeAttachment(null, "abandoned", null, null, null, 25, null, -1);
+        writer.reset();
+
+        for (int i = 0; i < 3; i++) {
+            writer.startMessage(start);
+            writer.writeAttachment(null, "message " + i, null, null, null, 25, null, -1);
+            byte[] actual = writer.endMessage(end);
+            assertSameBytes(message(new LinkedHashMap<>(), List.of(attachment(null, "message " + i, null, null,
+                    null, null, -1)), null), actual);
+        }
+    }
+
+    @Test
+    public void testTokenAttachments() throws IOException {
+        SlackPayloadWriter writer = new SlackPayloadWriter();
+        writer.startAttachmentList();
+        writer.writeAttachment(null, ESCAPED, null, null, null, 25, null, -1);
+        byte[] actual = writer.endAttachmentList();
+
+        assertSameBytes(List.of(Map.of("text", ESCAPED)), actual);
+    }
+
+    @Test
+    public void testTokenBatch() throws IOException {
+        List<Map<String, Object>> attachments = new ArrayList<>();
+        attachments.add(attachment("first", ESCAPED, null, null, null, null, -1));
+        attachments.add(attachment(null, "second " + ESCAPED, null, null, null, null, -1));
+
+        SlackPayloadWriter writer = new SlackPayloadWriter();
+        writer.startAttachmentList();
+        for (Map<String, Object> attachment : attachments) {
+            writeAttachment(writer, attachment, null);
+        }
+        assertEquals(2, writer.getAttachmentCount());
+        byte[] actual = writer.endAttachmentList();
+
+        assertSameBytes(attachments, actual);
+    }
+
+    @Test
+    public void testMergeMessages() throws IOException {
+        Map<String, Object> first = attachment(null, "first " + ESCAPED, "first", "danger", null, "a", 1L);
+        Map<String, Object> second = attachment("second", ESCAPED, "second", "warning", Map.of("k", "v"), "b", 2L);
+        List<byte[]> messages = new ArrayList<>();
+        messages.add(MAPPER.writeValueAsBytes(message(header("#logs"), List.of(first), null)));
+        messages.add(MAPPER.writeValueAsBytes(message(header("#logs"), List.of(second), ESCAPED)));
+
+        byte[] actual = new SlackPayloadWriter().mergeMessages(messages);
+
+        assertSameBytes(message(header("#logs"), List.of(first, second), ESCAPED), actual);
+    }
+
+}
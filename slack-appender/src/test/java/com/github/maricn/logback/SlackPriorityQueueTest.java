@@ -0,0 +1,269 @@
+package com.github.maricn.logback;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import ch.qos.logback.classic.Level;
+
+public class SlackPriorityQueueTest {
+
+    private static SlackEvent event(Level level, long timestamp) {
+        return new SlackEvent(level, "test", timestamp, new String[] { "message" }, Collections.emptyMap(), false);
+    }
+
+    private static SlackEvent important(long timestamp) {
+        return new SlackEvent(Level.INFO, "test", timestamp, new String[] { "message" }, Collections.emptyMap(),
+                true);
+    }
+
+    private static SlackPriorityQueue queue(int capacity, long maxBytes, SlackOverflowPolicy overflowPolicy) {
+        return new SlackPriorityQueue(capacity, maxBytes, SlackWaitStrategy.PARK, overflowPolicy, Level.WARN, 100);
+    }
+
+    private static List<Long> drain(SlackPriorityQueue queue) {
+        List<SlackEvent> events = new ArrayList<>();
+        queue.drainTo(events, Integer.MAX_VALUE);
+        List<Long> timestamps = new ArrayList<>();
+        for (SlackEvent evt : events) {
+            timestamps.add(evt.timestamp);
+        }
+        return timestamps;
+    }
+
+    @Test
+    public void testPriorities() {
+        SlackPriorityQueue queue = queue(10, 0, SlackOverflowPolicy.DROP_NEWEST);
+        queue.offer(event(Level.INFO, 1));
+        queue.offer(event(Level.ERROR, 2));
+        queue.offer(important(3));
+        queue.offer(event(Level.WARN, 4));
+
+        assertEquals(List.of(3L, 2L, 1L, 4L), drain(queue));
+    }
+
+    @Test
+    public void testDropNewest() {
+        SlackPriorityQueue queue = queue(2, 0, SlackOverflowPolicy.DROP_NEWEST);
+        assertEquals(0, queue.offer(event(Level.INFO, 1)));
+        assertEquals(0, queue.offer(event(Level.INFO, 2)));
+        assertEquals(-1, queue.offer(event(Level.INFO, 3)));
+        // other priorities have their own capacity
+        assertEquals(0, queue.offer(event(Level.ERROR, 4)));
+
+        assertEquals(List.of(4L, 1L, 2L), drain(queue));
+    }
+
+    @Test
+    public void testDropOldest() {
+        SlackPriorityQueue queue = queue(2, 0, SlackOverflowPolicy.DROP_OLDEST);
+        queue.offer(event(Level.INFO, 1));
+        queue.offer(event(Level.INFO, 2));
+        assertEquals(1, queue.offer(event(Level.INFO, 3)));
+
+        assertEquals(List.of(2L, 3L), drain(queue));
+    }
+
+    @Test
+    public void testDropOldestByBytes() {
+        long bytes = event(Level.INFO, 0).bytes;
+        SlackPriorityQueue queue = queue(10, 3 * bytes, SlackOverflowPolicy.DROP_OLDEST);
+        queue.offer(event(Level.INFO, 1));
+        queue.offer(event(Level.INFO, 2));
+        queue.offer(event(Level.ERROR, 3));
+
+        // lower priorities make room first
+        assertEquals(1, queue.offer(event(Level.ERROR, 4)));
+        assertEquals(List.of(3L, 4L, 2L), drain(queue));
+        assertEquals(0, queue.getFill(), 0.001);
+    }
+
+    @Test
+    public void testDropOldestKeepsHigherPriorities() {
+        long bytes = event(Level.INFO, 0).bytes;
+        SlackPriorityQueue queue = queue(10, 2 * bytes, SlackOverflowPolicy.DROP_OLDEST);
+        queue.offer(important(1));
+        queue.offer(event(Level.ERROR, 2));
+
+        assertEquals(-1, queue.offer(event(Level.INFO, 3)));
+        assertEquals(List.of(1L, 2L), drain(queue));
+    }
+
+    @Test
+    public void testOversizedEventKeepsQueuedEvents() {
+        long bytes = event(Level.INFO, 0).bytes;
+        SlackPriorityQueue queue = queue(100, 20 * bytes, SlackOverflowPolicy.DROP_OLDEST);
+        for (int i = 0; i < 20; i++) {
+            assertEquals(0, queue.offer(event(Level.INFO, i)));
+        }
+
+        // larger than the queue, no matter how many events are dropped
+        SlackEvent oversized = new SlackEvent(Level.ERROR, "test", 20,
+                new String[] { "x".repeat((int) (20 * bytes)) }, Collections.emptyMap(), false);
+        assertEquals(-1, queue.offer(oversized));
+        assertEquals(20, queue.size());
+    }
+
+    @Test
+    public void testCountEvictedWhenDropped() {
+        long bytes = event(Level.INFO, 0).bytes;
+        SlackPriorityQueue queue = queue(10, 3 * bytes, SlackOverflowPolicy.DROP_OLDEST);
+        queue.offer(important(1));
+        queue.offer(event(Level.INFO, 2));
+        queue.offer(important(3));
+
+        // room for the error only if an important event was dropped
+        SlackEvent large = new SlackEvent(Level.ERROR, "test", 4, new String[] { "x".repeat((int) bytes / 2) },
+                Collections.emptyMap(), false);
+        assertTrue(large.bytes > bytes && large.bytes <= 2 * bytes);
+        assertEquals(-2, queue.offer(large));
+        assertEquals(List.of(1L, 3L), drain(queue));
+    }
+
+    @Test
+    public void testDropBelowLevel() {
+        SlackPriorityQueue queue = queue(2, 0, SlackOverflowPolicy.DROP_BELOW_LEVEL);
+        queue.offer(event(Level.INFO, 1));
+        queue.offer(event(Level.INFO, 2));
+
+        assertEquals(-1, queue.offer(event(Level.INFO, 3)));
+        assertEquals(1, queue.offer(event(Level.WARN, 4)));
+        assertEquals(List.of(2L, 4L), drain(queue));
+    }
+
+    @Test
+    public void testOfferIfRoom() {
+        SlackPriorityQueue queue = queue(1, 0, SlackOverflowPolicy.DROP_OLDEST);
+        assertTrue(queue.offerIfRoom(event(Level.INFO, 0)));
+        assertFalse(queue.offerIfRoom(event(Level.INFO, 1)));
+
+        List<SlackEvent> events = new ArrayList<>();
+        queue.drainTo(events, Integer.MAX_VALUE);
+        assertEquals(1, events.size());
+        assertEquals(0, events.get(0).timestamp);
+    }
+
+    @Test
+    public void testBlock() throws InterruptedException {
+        SlackPriorityQueue queue = new SlackPriorityQueue(1, 0, SlackWaitStrategy.PARK, SlackOverflowPolicy.BLOCK,
+                Level.WARN, 10_000);
+        queue.offer(event(Level.INFO, 1));
+
+        Thread consumer = new Thread(() -> {
+            try {
+                Thread.sleep(100);
+                queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        consumer.start();
+        assertEquals(0, queue.offer(event(Level.INFO, 2)));
+        consumer.join();
+
+        assertEquals(List.of(2L), drain(queue));
+    }
+
+    @Test
+    public void testBlockTimeout() {
+        SlackPriorityQueue queue = queue(1, 0, SlackOverflowPolicy.BLOCK);
+        queue.offer(event(Level.INFO, 1));
+
+        long start = System.nanoTime();
+        assertEquals(-1, queue.offer(event(Level.INFO, 2)));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    @Test
+    public void testPollTimeout() throws InterruptedException {
+        SlackPriorityQueue queue = queue(1, 0, SlackOverflowPolicy.DROP_NEWEST);
+        assertNull(queue.poll(50, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testStopAfterEvents() throws InterruptedException {
+        SlackPriorityQueue queue = queue(10, 0, SlackOverflowPolicy.DROP_NEWEST);
+        queue.offer(event(Level.INFO, 1));
+        queue.stop(1);
+
+        assertEquals(1, queue.take().timestamp);
+        assertSame(SlackPriorityQueue.STOP, queue.take());
+    }
+
+    @Test
+    public void testConcurrentOfferAndTake() throws InterruptedException {
+        for (SlackWaitStrategy waitStrategy : SlackWaitStrategy.values()) {
+            testConcurrentOfferAndTake(waitStrategy);
+        }
+    }
+
+    private void testConcurrentOfferAndTake(SlackWaitStrategy waitStrategy) throws InterruptedException {
+        int producers = 4;
+        int consumers = 2;
+        int events = 10_000;
+        SlackPriorityQueue queue = new SlackPriorityQueue(32, 0, waitStrategy, SlackOverflowPolicy.DROP_NEWEST,
+                Level.WARN, 100);
+        AtomicLong expected = new AtomicLong();
+        AtomicLong sum = new AtomicLong();
+        AtomicInteger taken = new AtomicInteger();
+
+        List<Thread> consumerThreads = new ArrayList<>();
+        for (int c = 0; c < consumers; c++) {
+            consumerThreads.add(new Thread(() -> {
+                try {
+                    SlackEvent evt;
+                    while ((evt = queue.take()) != SlackPriorityQueue.STOP) {
+                        sum.addAndGet(evt.timestamp);
+                        taken.incrementAndGet();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+        }
+        List<Thread> producerThreads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            long base = p * 1_000_000L;
+            producerThreads.add(new Thread(() -> {
+                for (int i = 0; i < events; i++) {
+                    Level level = i % 10 == 0 ? Level.ERROR : Level.INFO;
+                    while (queue.offer(event(level, base + i)) < 0) {
+                        Thread.yield();
+                    }
+                    expected.addAndGet(base + i);
+                }
+            }));
+        }
+        for (Thread thread : consumerThreads) {
+            thread.start();
+        }
+        for (Thread thread : producerThreads) {
+            thread.start();
+        }
+        for (Thread thread : producerThreads) {
+            thread.join(TimeUnit.SECONDS.toMillis(30));
+            assertFalse(thread.isAlive());
+        }
+        queue.stop(consumers);
+        for (Thread thread : consumerThreads) {
+            thread.join(TimeUnit.SECONDS.toMillis(30));
+            assertFalse(thread.isAlive(), "consumer did not stop with " + waitStrategy);
+        }
+
+        assertEquals(producers * events, taken.get(), waitStrategy.toString());
+        assertEquals(expected.get(), sum.get(), waitStrategy.toString());
+        assertEquals(0, queue.size());
+    }
+
+}
@@ -0,0 +1,82 @@
+package com.github.maricn.logback;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+public class SlackRateLimiterTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void testBurstThenSustainedRate() {
+        AtomicLong now = new AtomicLong(1_000 * SECOND);
+        SlackRateLimiter limiter = new SlackRateLimiter(1, 3, now::get);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.tryAcquire("#logs"));
+        }
+        assertEquals(SECOND, limiter.tryAcquire("#logs"));
+
+        now.addAndGet(SECOND / 2);
+        assertEquals(SECOND / 2, limiter.tryAcquire("#logs"));
+        now.addAndGet(SECOND / 2);
+        assertEquals(0, limiter.tryAcquire("#logs"));
+        assertTrue(limiter.tryAcquire("#logs") > 0);
+    }
+
+    @Test
+    public void testBurstNotExceededAfterIdle() {
+        AtomicLong now = new AtomicLong();
+        SlackRateLimiter limiter = new SlackRateLimiter(2, 2, now::get);
+
+        now.addAndGet(60 * SECOND);
+        assertEquals(0, limiter.tryAcquire("#logs"));
+        assertEquals(0, limiter.tryAcquire("#logs"));
+        assertEquals(SECOND / 2, limiter.tryAcquire("#logs"));
+    }
+
+    @Test
+    public void testDestinationsIndependent() {
+        AtomicLong now = new AtomicLong();
+        SlackRateLimiter limiter = new SlackRateLimiter(1, 1, now::get);
+
+        assertEquals(0, limiter.tryAcquire("#first"));
+        assertTrue(limiter.tryAcquire("#first") > 0);
+        assertEquals(0, limiter.tryAcquire("#second"));
+    }
+
+    @Test
+    public void testRetryAfter() {
+        AtomicLong now = new AtomicLong();
+        SlackRateLimiter limiter = new SlackRateLimiter(1, 5, now::get);
+        assertEquals(0, limiter.tryAcquire("#logs"));
+
+        limiter.retryAfter("#logs", 30_000);
+        assertEquals(30 * SECOND, limiter.tryAcquire("#logs"));
+        now.addAndGet(10 * SECOND);
+        assertEquals(20 * SECOND, limiter.tryAcquire("#logs"));
+        // a shorter request does not shorten the block
+        limiter.retryAfter("#logs", 1_000);
+        assertEquals(20 * SECOND, limiter.tryAcquire("#logs"));
+
+        now.addAndGet(20 * SECOND);
+        assertEquals(0, limiter.tryAcquire("#logs"));
+        // no burst directly after being rate limited
+        assertEquals(SECOND, limiter.tryAcquire("#logs"));
+    }
+
+    @Test
+    public void testAcquireWaits() throws InterruptedException {
+        SlackRateLimiter limiter = new SlackRateLimiter(20, 1);
+        long start = System.nanoTime();
+        limiter.acquire("#logs");
+        limiter.acquire("#logs");
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(40));
+    }
+
+}
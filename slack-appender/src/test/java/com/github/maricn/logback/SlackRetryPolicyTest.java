@@ -0,0 +1,66 @@
+package com.github.maricn.logback;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class SlackRetryPolicyTest {
+
+    private static void assertBackoff(SlackRetryPolicy policy, int attempt, long min, long max) {
+        for (int i = 0; i < 1000; i++) {
+            long backoff = policy.backoff(attempt);
+            assertTrue(backoff >= min && backoff <= max, "attempt " + attempt + ": " + backoff);
+        }
+    }
+
+    @Test
+    public void testExponentialBackoffWithJitter() {
+        SlackRetryPolicy policy = new SlackRetryPolicy(10, 100, 1000, 10, 0.1);
+        assertBackoff(policy, 1, 50, 100);
+        assertBackoff(policy, 2, 100, 200);
+        assertBackoff(policy, 3, 200, 400);
+        assertBackoff(policy, 4, 400, 800);
+        // capped
+        assertBackoff(policy, 5, 500, 1000);
+        assertBackoff(policy, 40, 500, 1000);
+        assertBackoff(policy, Integer.MAX_VALUE, 500, 1000);
+    }
+
+    @Test
+    public void testMaxAttempts() {
+        SlackRetryPolicy policy = new SlackRetryPolicy(3, 100, 1000, 10, 0.1);
+        assertTrue(policy.shouldRetry(1));
+        assertTrue(policy.shouldRetry(2));
+        assertFalse(policy.shouldRetry(3));
+        assertFalse(policy.shouldRetry(4));
+    }
+
+    @Test
+    public void testBudget() {
+        SlackRetryPolicy policy = new SlackRetryPolicy(10, 100, 1000, 2, 0.5);
+        assertTrue(policy.shouldRetry(1));
+        assertTrue(policy.shouldRetry(1));
+        // budget spent
+        assertFalse(policy.shouldRetry(1));
+
+        // earned back by posted messages
+        policy.onFirstAttempt();
+        assertFalse(policy.shouldRetry(1));
+        policy.onFirstAttempt();
+        assertTrue(policy.shouldRetry(1));
+        assertFalse(policy.shouldRetry(1));
+    }
+
+    @Test
+    public void testBudgetCapped() {
+        SlackRetryPolicy policy = new SlackRetryPolicy(10, 100, 1000, 2, 1);
+        for (int i = 0; i < 100; i++) {
+            policy.onFirstAttempt();
+        }
+        assertTrue(policy.shouldRetry(1));
+        assertTrue(policy.shouldRetry(1));
+        assertFalse(policy.shouldRetry(1));
+    }
+
+}
@@ -0,0 +1,143 @@
+package com.github.maricn.logback;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import ch.qos.logback.classic.Level;
+
+public class SlackRingBufferTest {
+
+    private static SlackEvent event(long timestamp) {
+        return new SlackEvent(Level.INFO, "test", timestamp, new String[] { "message" }, Collections.emptyMap(),
+                false);
+    }
+
+    @Test
+    public void testOfferUntilFull() {
+        SlackRingBuffer ring = new SlackRingBuffer(3);
+        assertNull(ring.poll());
+        for (int i = 0; i < 3; i++) {
+            assertTrue(ring.offer(event(i)));
+        }
+        assertFalse(ring.offer(event(3)));
+        assertEquals(3, ring.size());
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(i, ring.poll().timestamp);
+        }
+        assertNull(ring.poll());
+        assertEquals(0, ring.size());
+    }
+
+    @Test
+    public void testWrapAround() {
+        SlackRingBuffer ring = new SlackRingBuffer(4);
+        long next = 0;
+        long expected = 0;
+        // fill and empty the buffer partially, so positions wrap around many times
+        for (int lap = 0; lap < 100; lap++) {
+            for (int i = 0; i < 3; i++) {
+                assertTrue(ring.offer(event(next++)));
+            }
+            for (int i = 0; i < 2; i++) {
+                assertEquals(expected++, ring.poll().timestamp);
+            }
+            while (ring.size() < 4) {
+                assertTrue(ring.offer(event(next++)));
+            }
+            assertFalse(ring.offer(event(-1)));
+            while (ring.size() > 1) {
+                assertEquals(expected++, ring.poll().timestamp);
+            }
+        }
+        assertEquals(expected, ring.poll().timestamp);
+        assertNull(ring.poll());
+    }
+
+    @Test
+    public void testSingleEvent() {
+        SlackRingBuffer ring = new SlackRingBuffer(1);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(ring.offer(event(i)));
+            assertFalse(ring.offer(event(-1)));
+            assertEquals(1, ring.size());
+            assertEquals(i, ring.poll().timestamp);
+            assertNull(ring.poll());
+        }
+    }
+
+    @Test
+    public void testReturnsSameInstance() {
+        SlackRingBuffer ring = new SlackRingBuffer(1);
+        SlackEvent evt = event(0);
+        assertTrue(ring.offer(evt));
+        assertSame(evt, ring.poll());
+    }
+
+    @Test
+    public void testConcurrentOfferAndPoll() throws InterruptedException {
+        int producers = 4;
+        int consumers = 2;
+        int events = 20_000;
+        SlackRingBuffer ring = new SlackRingBuffer(64);
+        AtomicLong expected = new AtomicLong();
+        AtomicLong sum = new AtomicLong();
+        AtomicInteger taken = new AtomicInteger();
+        CountDownLatch produced = new CountDownLatch(producers);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            long base = p * 1_000_000L;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < events; i++) {
+                    SlackEvent evt = event(base + i);
+                    while (!ring.offer(evt)) {
+                        Thread.yield();
+                    }
+                    expected.addAndGet(base + i);
+                }
+                produced.countDown();
+            }));
+        }
+        for (int c = 0; c < consumers; c++) {
+            threads.add(new Thread(() -> {
+                while (taken.get() < producers * events) {
+                    SlackEvent evt = ring.poll();
+                    if (evt != null) {
+                        sum.addAndGet(evt.timestamp);
+                        taken.incrementAndGet();
+                    }
+                    else {
+                        Thread.yield();
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        assertTrue(produced.await(30, TimeUnit.SECONDS));
+        for (Thread thread : threads) {
+            thread.join(TimeUnit.SECONDS.toMillis(30));
+            assertFalse(thread.isAlive());
+        }
+
+        assertEquals(producers * events, taken.get());
+        assertEquals(expected.get(), sum.get());
+        assertEquals(0, ring.size());
+    }
+
+}
@@ -0,0 +1,243 @@
+package com.github.maricn.logback;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import ch.qos.logback.core.ContextBase;
+import ch.qos.logback.core.spi.ContextAwareBase;
+
+public class SlackSpoolTest {
+
+    private static final URI WEBHOOK = URI.create("https://hooks.slack.test/services/T000/B000/secret");
+
+    private static final String JSON = "application/json";
+
+    @TempDir
+    Path directory;
+
+    private SlackSpool open(int segmentSize) throws IOException {
+        ContextAwareBase status = new ContextAwareBase();
+        status.setContext(new ContextBase());
+        SlackSpool spool = new SlackSpool(directory, segmentSize, 1024 * 1024, status);
+        spool.open();
+        return spool;
+    }
+
+    private static boolean append(SlackSpool spool, String message) throws IOException {
+        return spool.append(WEBHOOK, WEBHOOK.toString(), JSON, 1, message.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static List<String> peek(SlackSpool spool) {
+        List<String> messages = new ArrayList<>();
+        for (SlackSpool.Record record : spool.peek(Integer.MAX_VALUE)) {
+            messages.add(new String(record.body, StandardCharsets.UTF_8));
+        }
+        return messages;
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".spool")).sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static void overwrite(Path file, long position, byte[] bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(bytes), position);
+        }
+    }
+
+    @Test
+    public void testReplayAfterReopen() throws IOException {
+        SlackSpool spool = open(4096);
+        assertTrue(append(spool, "first"));
+        assertTrue(append(spool, "second"));
+        assertTrue(append(spool, "third"));
+        spool.close();
+
+        spool = open(4096);
+        List<SlackSpool.Record> records = spool.peek(10);
+        assertEquals(List.of("first", "second", "third"), peek(spool));
+        assertEquals(WEBHOOK, records.get(0).uri);
+        assertEquals(WEBHOOK.toString(), records.get(0).destination);
+        assertEquals(JSON, records.get(0).contentType);
+        assertEquals(1, records.get(0).events);
+
+        spool.commit(records.get(0));
+        spool.close();
+
+        // delivered messages are not posted again
+        spool = open(4096);
+        assertEquals(List.of("second", "third"), peek(spool));
+        // appended after the existing messages
+        assertTrue(append(spool, "fourth"));
+        assertEquals(List.of("second", "third", "fourth"), peek(spool));
+        spool.close();
+    }
+
+    @Test
+    public void testOwnerOnlyPermissions() throws IOException {
+        assumeTrue(directory.getFileSystem().supportedFileAttributeViews().contains("posix"));
+        Path spoolDirectory = directory.resolve("spool");
+        ContextAwareBase status = new ContextAwareBase();
+        status.setContext(new ContextBase());
+        SlackSpool spool = new SlackSpool(spoolDirectory, 4096, 1024 * 1024, status);
+        spool.open();
+        spool.close();
+
+        assertEquals("rwx------", PosixFilePermissions.toString(Files.getPosixFilePermissions(spoolDirectory)));
+        try (Stream<Path> files = Files.list(spoolDirectory)) {
+            for (Path file : files.collect(Collectors.toList())) {
+                assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(file)));
+            }
+        }
+    }
+
+    @Test
+    public void testRotation() throws IOException {
+        // room for two messages per segment (143 bytes each)
+        SlackSpool spool = open(320);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(append(spool, "message " + i));
+        }
+        assertEquals(3, segments().size());
+        assertEquals(List.of("message 0", "message 1", "message 2", "message 3", "message 4"), peek(spool));
+
+        // completely delivered segments are deleted
+        List<SlackSpool.Record> records = spool.peek(3);
+        spool.commit(records.get(2));
+        assertEquals(2, segments().size());
+        assertEquals(List.of("message 3", "message 4"), peek(spool));
+        spool.close();
+
+        spool = open(320);
+        assertEquals(List.of("message 3", "message 4"), peek(spool));
+        spool.close();
+    }
+
+    @Test
+    public void testMessageLargerThanSegment() throws IOException {
+        SlackSpool spool = open(320);
+        assertFalse(append(spool, "x".repeat(256)));
+        assertTrue(append(spool, "small"));
+        assertEquals(List.of("small"), peek(spool));
+        spool.close();
+    }
+
+    @Test
+    public void testCorruptRecordSkipped() throws IOException {
+        SlackSpool spool = open(320);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(append(spool, "message " + i));
+        }
+        spool.close();
+
+        // damage the last byte of the second message in the first segment
+        Path first = segments().get(0);
+        int recordSize = (int) (320 - countTrailingZeros(first)) / 2;
+        overwrite(first, 2L * recordSize - 1, new byte[] { 'X' });
+
+        spool = open(320);
+        assertEquals(List.of("message 0", "message 2"), peek(spool));
+        spool.close();
+    }
+
+    @Test
+    public void testTornRecordSkipped() throws IOException {
+        SlackSpool spool = open(4096);
+        assertTrue(append(spool, "complete"));
+        assertTrue(append(spool, "torn"));
+        spool.close();
+
+        // the end of the last message never reached the disk
+        Path segment = segments().get(0);
+        long end = 4096 - countTrailingZeros(segment);
+        overwrite(segment, end - 2, new byte[2]);
+
+        spool = open(4096);
+        assertEquals(List.of("complete"), peek(spool));
+        // the torn message is overwritten by the next one
+        assertTrue(append(spool, "next"));
+        assertEquals(List.of("complete", "next"), peek(spool));
+        spool.close();
+
+        spool = open(4096);
+        assertEquals(List.of("complete", "next"), peek(spool));
+        spool.close();
+    }
+
+    @Test
+    public void testCorruptOffsetRedelivers() throws IOException {
+        SlackSpool spool = open(4096);
+        assertTrue(append(spool, "first"));
+        assertTrue(append(spool, "second"));
+        spool.commit(spool.peek(1).get(0));
+        spool.close();
+
+        overwrite(directory.resolve("offset"), 8, new byte[] { 1, 2, 3, 4 });
+
+        // messages are rather posted again than lost
+        spool = open(4096);
+        assertEquals(List.of("first", "second"), peek(spool));
+        spool.close();
+    }
+
+    @Test
+    public void testLongStrings() throws IOException {
+        SlackSpool spool = open(256 * 1024);
+        String longDestination = "#" + "c".repeat(70_000);
+        assertFalse(spool.append(WEBHOOK, longDestination, JSON, 1, "too long".getBytes(StandardCharsets.UTF_8)));
+        URI longUri = URI.create(WEBHOOK + "/" + "u".repeat(70_000));
+        assertFalse(spool.append(longUri, WEBHOOK.toString(), JSON, 1, "too long".getBytes(StandardCharsets.UTF_8)));
+
+        // the limit is in bytes, not characters
+        String multiByte = "#" + "\u00e4".repeat(40_000);
+        assertFalse(spool.append(WEBHOOK, multiByte, JSON, 1, "too long".getBytes(StandardCharsets.UTF_8)));
+
+        String maxDestination = "#" + "c".repeat(0xFFFF - 1);
+        assertTrue(spool.append(WEBHOOK, maxDestination, JSON, 1, "longest".getBytes(StandardCharsets.UTF_8)));
+        assertTrue(append(spool, "after"));
+        spool.close();
+
+        spool = open(256 * 1024);
+        List<SlackSpool.Record> records = spool.peek(10);
+        assertEquals(2, records.size());
+        assertEquals(maxDestination, records.get(0).destination);
+        assertEquals(List.of("longest", "after"), peek(spool));
+        spool.close();
+    }
+
+    /**
+     * @return the number of zero bytes at the end of a file, i.e. after the
+     *   last record of a segment
+     */
+    private static long countTrailingZeros(Path file) throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        int end = bytes.length;
+        while (end > 0 && bytes[end - 1] == 0) {
+            end--;
+        }
+        return bytes.length - end;
+    }
+
+}
@@ -0,0 +1,282 @@
+package com.github.maricn.logback;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.classic.spi.ThrowableProxy;
+
+public class SlackThrowableRendererTest {
+
+    /**
+     * Renderer counting the stack traces it renders.
+     */
+    private static class CountingRenderer extends SlackThrowableRenderer {
+
+        final AtomicInteger rendered = new AtomicInteger();
+
+        CountingRenderer(int maxLength, int cacheSize) {
+            super(maxLength, cacheSize, SlackThrowableRenderer.DEFAULT_FRAMEWORK_PACKAGES);
+        }
+
+        @Override
+        String[] renderFrames(IThrowableProxy throwable) {
+            rendered.incrementAndGet();
+            return super.renderFrames(throwable);
+        }
+
+    }
+
+    private static StackTraceElement frame(String className, String method, int line) {
+        return new StackTraceElement(className, method, className.substring(className.lastIndexOf('.') + 1)
+                + ".java", line);
+    }
+
+    private static RuntimeException exception(String message, String method) {
+        RuntimeException exception = new RuntimeException(message);
+        exception.setStackTrace(new StackTraceElement[] {
+                frame("com.example.Service", method, 42),
+                frame("java.lang.reflect.Method", "invoke", 580),
+                frame("org.springframework.aop.Proxy", "invoke", 10),
+                frame("org.springframework.aop.Proxy", "proceed", 20),
+                frame("org.springframework.web.Dispatcher", "dispatch", 30),
+                frame("com.example.Controller", "handle", 7),
+                frame("org.apache.catalina.Valve", "invoke", 1) });
+        return exception;
+    }
+
+    @Test
+    public void testCollapseFrameworkFrames() {
+        SlackThrowableRenderer renderer = new SlackThrowableRenderer(0, 16,
+                SlackThrowableRenderer.DEFAULT_FRAMEWORK_PACKAGES);
+        String rendered = renderer.render(new ThrowableProxy(exception("failed", "call")));
+
+        assertEquals("java.lang.RuntimeException: failed\n"
+                + "\tat com.example.Service.call(Service.java:42)\n"
+                + "\tat java.lang.reflect.Method.invoke(Method.java:580)\n"
+                + "\t... 3 frames in org.springframework\n"
+                + "\tat com.example.Controller.handle(Controller.java:7)\n"
+                + "\tat org.apache.catalina.Valve.invoke(Valve.java:1)\n", rendered);
+    }
+
+    @Test
+    public void testFrameThatThrewIsShown() {
+        RuntimeException exception = new RuntimeException("in framework");
+        exception.setStackTrace(new StackTraceElement[] {
+                frame("org.springframework.Bean", "create", 1),
+                frame("org.springframework.Bean", "init", 2),
+                frame("org.springframework.Bean", "load", 3) });
+        SlackThrowableRenderer renderer = new SlackThrowableRenderer(0, 16,
+                SlackThrowableRenderer.DEFAULT_FRAMEWORK_PACKAGES);
+
+        assertEquals("java.lang.RuntimeException: in framework\n"
+                + "\tat org.springframework.Bean.create(Bean.java:1)\n"
+                + "\t... 2 frames in org.springframework\n",
+                renderer.render(new ThrowableProxy(exception)));
+    }
+
+    @Test
+    public void testCommonFramesOmitted() {
+        RuntimeException cause = exception("cause", "call");
+        IllegalStateException exception = new IllegalStateException("wrapped", cause);
+        StackTraceElement[] frames = cause.getStackTrace().clone();
+        frames[0] = frame("com.example.Wrapper", "wrap", 5);
+        exception.setStackTrace(frames);
+
+        SlackThrowableRenderer renderer = new SlackThrowableRenderer(0, 16, Collections.emptyList());
+        String rendered = renderer.render(new ThrowableProxy(exception));
+
+        assertTrue(rendered.startsWith("java.lang.IllegalStateException: wrapped\n"
+                + "\tat com.example.Wrapper.wrap(Wrapper.java:5)\n"), rendered);
+        assertTrue(rendered.contains("Caused by: java.lang.RuntimeException: cause\n"
+                + "\tat com.example.Service.call(Service.java:42)\n"
+                + "\t... 6 common frames omitted\n"), rendered);
+    }
+
+    @Test
+    public void testTruncateToMaxLength() {
+        RuntimeException exception = new RuntimeException("deep");
+        StackTraceElement[] frames = new StackTraceElement[10_000];
+        for (int i = 0; i < frames.length; i++) {
+            frames[i] = frame("com.example.Recursive", "call", i);
+        }
+        exception.setStackTrace(frames);
+
+        SlackThrowableRenderer renderer = new SlackThrowableRenderer(500, 16, Collections.emptyList());
+        String rendered = renderer.render(new ThrowableProxy(exception));
+
+        assertTrue(rendered.length() <= 500 + "\t... truncated\n".length(), rendered);
+        assertTrue(rendered.startsWith("java.lang.RuntimeException: deep\n"
+                + "\tat com.example.Recursive.call(Recursive.java:0)\n"), rendered);
+        // only complete lines
+        assertTrue(rendered.endsWith("\n"));
+        assertFalse(rendered.contains("Recursive.java:9999"));
+    }
+
+    @Test
+    public void testTruncateLongMessage() {
+        RuntimeException exception = exception("x".repeat(1_000_000), "call");
+
+        SlackThrowableRenderer renderer = new SlackThrowableRenderer(200, 16, Collections.emptyList());
+        String rendered = renderer.render(new ThrowableProxy(exception));
+
+        assertTrue(rendered.length() <= 200 + "\t... truncated\n".length(), rendered);
+        assertTrue(rendered.startsWith("java.lang.RuntimeException: xxx"));
+        assertTrue(rendered.contains("\u2026\n"));
+    }
+
+    @Test
+    public void testCacheHit() {
+        CountingRenderer renderer = new CountingRenderer(0, 16);
+
+        String first = renderer.render(new ThrowableProxy(exception("first", "call")));
+        // same frames, different message and instance
+        String second = renderer.render(new ThrowableProxy(exception("second", "call")));
+        assertEquals(1, renderer.rendered.get());
+        assertEquals(first.replace("first", "second"), second);
+
+        renderer.render(new ThrowableProxy(exception("other", "otherCall")));
+        assertEquals(2, renderer.rendered.get());
+    }
+
+    @Test
+    public void testCacheDisabled() {
+        CountingRenderer renderer = new CountingRenderer(0, 0);
+        renderer.render(new ThrowableProxy(exception("first", "call")));
+        renderer.render(new ThrowableProxy(exception("first", "call")));
+        assertEquals(2, renderer.rendered.get());
+    }
+
+    @Test
+    public void testHashCollision() {
+        CountingRenderer renderer = new CountingRenderer(0, 16) {
+
+            @Override
+            long hash(IThrowableProxy throwable) {
+                // all stack traces collide
+                return 0;
+            }
+
+        };
+
+        String first = renderer.render(new ThrowableProxy(exception("message", "call")));
+        String other = renderer.render(new ThrowableProxy(exception("message", "otherCall")));
+        assertTrue(first.contains("Service.call("), first);
+        assertTrue(other.contains("Service.otherCall("), other);
+        assertFalse(other.contains("Service.call("), other);
+        assertEquals(2, renderer.rendered.get());
+
+        // cause chain is part of the identity
+        RuntimeException wrapped = exception("message", "otherCall");
+        wrapped.initCause(new IllegalArgumentException("cause"));
+        String withCause = renderer.render(new ThrowableProxy(wrapped));
+        assertTrue(withCause.contains("Caused by: java.lang.IllegalArgumentException: cause"), withCause);
+        assertEquals(3, renderer.rendered.get());
+    }
+
+    @Test
+    public void testSuppressed() {
+        RuntimeException exception = new RuntimeException("failed");
+        exception.setStackTrace(new StackTraceElement[] {
+                frame("com.example.Service", "call", 42),
+                frame("com.example.Controller", "handle", 7) });
+        IllegalStateException closing = new IllegalStateException("close failed",
+                new IllegalArgumentException("invalid"));
+        closing.setStackTrace(new StackTraceElement[] {
+                frame("com.example.Resource", "close", 3),
+                frame("com.example.Controller", "handle", 7) });
+        closing.getCause().setStackTrace(new StackTraceElement[] { frame("com.example.Resource", "flush", 5) });
+        exception.addSuppressed(closing);
+        exception.initCause(new IllegalArgumentException("cause"));
+        exception.getCause().setStackTrace(new StackTraceElement[] { frame("com.example.Client", "send", 9) });
+
+        CountingRenderer renderer = new CountingRenderer(0, 16);
+        String rendered = renderer.render(new ThrowableProxy(exception));
+        assertEquals("java.lang.RuntimeException: failed\n"
+                + "\tat com.example.Service.call(Service.java:42)\n"
+                + "\tat com.example.Controller.handle(Controller.java:7)\n"
+                + "\tSuppressed: java.lang.IllegalStateException: close failed\n"
+                + "\t\tat com.example.Resource.close(Resource.java:3)\n"
+                + "\t\t... 1 common frames omitted\n"
+                + "\tCaused by: java.lang.IllegalArgumentException: invalid\n"
+                + "\t\tat com.example.Resource.flush(Resource.java:5)\n"
+                + "Caused by: java.lang.IllegalArgumentException: cause\n"
+                + "\tat com.example.Client.send(Client.java:9)\n", rendered);
+
+        // suppressed exceptions are part of the identity
+        assertEquals(rendered, renderer.render(new ThrowableProxy(exception)));
+        assertEquals(1, renderer.rendered.get());
+        exception.addSuppressed(new IllegalStateException("another"));
+        assertTrue(renderer.render(new ThrowableProxy(exception)).contains(
+                "\tSuppressed: java.lang.IllegalStateException: another\n"));
+        assertEquals(2, renderer.rendered.get());
+    }
+
+    @Test
+    public void testSuppressedWithinMaxLength() {
+        RuntimeException exception = exception("failed", "call");
+        for (int i = 0; i < 1_000; i++) {
+            exception.addSuppressed(exception("suppressed " + i, "close"));
+        }
+
+        SlackThrowableRenderer renderer = new SlackThrowableRenderer(1_000, 16, Collections.emptyList());
+        String rendered = renderer.render(new ThrowableProxy(exception));
+        assertTrue(rendered.length() <= 1_000 + "\t... truncated\n".length(), rendered);
+        assertTrue(rendered.contains("\tSuppressed: java.lang.RuntimeException: suppressed 0\n"), rendered);
+        assertTrue(rendered.endsWith("\t... truncated\n"), rendered);
+    }
+
+    @Test
+    public void testConverter() {
+        LoggerContext context = new LoggerContext();
+        Logger logger = context.getLogger("test");
+        SlackThrowableConverter converter = new SlackThrowableConverter();
+        converter.setContext(context);
+        converter.setOptionList(List.of("8000", "16", "com.example.internal."));
+        converter.start();
+
+        RuntimeException exception = exception("failed", "call");
+        StackTraceElement[] frames = Arrays.copyOf(exception.getStackTrace(), 9);
+        frames[7] = frame("com.example.internal.Worker", "run", 1);
+        frames[8] = frame("com.example.internal.Worker", "loop", 2);
+        exception.setStackTrace(frames);
+        LoggingEvent evt = new LoggingEvent(Logger.class.getName(), logger, Level.ERROR, "failed", exception,
+                null);
+        String rendered = converter.convert(evt);
+        // default and additional packages
+        assertTrue(rendered.contains("\t... 3 frames in org.springframework\n"), rendered);
+        assertTrue(rendered.endsWith("\t... 2 frames in com.example.internal\n"), rendered);
+
+        LoggingEvent withoutThrowable = new LoggingEvent(Logger.class.getName(), logger, Level.ERROR, "failed",
+                null, null);
+        assertEquals("", converter.convert(withoutThrowable));
+    }
+
+    @Test
+    public void testConverterMaxLength() {
+        LoggerContext context = new LoggerContext();
+        Logger logger = context.getLogger("test");
+        SlackThrowableConverter converter = new SlackThrowableConverter();
+        converter.setContext(context);
+        converter.setOptionList(List.of("100"));
+        converter.start();
+
+        LoggingEvent evt = new LoggingEvent(Logger.class.getName(), logger, Level.ERROR, "failed",
+                exception("y".repeat(10_000), "call"), null);
+        String rendered = converter.convert(evt);
+        assertTrue(rendered.length() <= 100 + "\t... truncated\n".length(), rendered);
+    }
+
+}